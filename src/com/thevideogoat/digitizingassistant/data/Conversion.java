@@ -7,12 +7,16 @@ import java.io.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class Conversion implements Serializable {
 
     @Serial
     private static final long serialVersionUID = 7899114141134424890L;
+    public String id;
     public String name, note, technicianNotes;
     public Type type;
     public ArrayList<FileReference> linkedFiles;
@@ -29,8 +33,20 @@ public class Conversion implements Serializable {
     public LocalDateTime lastExportTime = null;
     public String lastExportType = ""; // "digitizing_sheet", "file_map", "smart_rename"
 
+    // Save tracking: set whenever the conversion changes, cleared once its fragment has been written
+    private transient boolean dirty = true;
+    private transient String cachedFragment;
+    // Bumped on every change so a background save only marks clean what it actually wrote
+    private transient int revision;
+
+    // Set while only the summary from the project index is loaded
+    private transient volatile ProjectIndex detailsSource;
+    // The linked files the project index lists, kept only while the details aren't loaded
+    transient volatile List<FileReference> indexedLinks;
+
     public Conversion(String name){
-        // assign name
+        // assign name and a stable identity that survives renames
+        this.id = newId();
         this.name = name;
 
         // assign default values
@@ -47,9 +63,27 @@ public class Conversion implements Serializable {
         damageHistory = new ArrayList<>();
     }
 
+    /**
+     * Bare conversion for decoders that set the date, time and everything else themselves;
+     * skips generating an id and reading the clock
+     */
+    Conversion(String id, String name) {
+        this.id = id != null ? id : newId();
+        this.name = name;
+        this.note = "";
+        this.technicianNotes = "";
+        this.type = Type.VHS;
+        this.linkedFiles = new ArrayList<>();
+        status = ConversionStatus.NOT_STARTED;
+        version = DigitizingAssistant.VERSION;
+    }
+
     @Serial
     private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
         ois.defaultReadObject();
+        if (id == null) {
+            id = newId();
+        }
         if (status == null) {
             status = ConversionStatus.NOT_STARTED;
         }
@@ -69,6 +103,10 @@ public class Conversion implements Serializable {
         }
     }
 
+    static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
     public Color getStatusColor() {
         switch (status) {
             case NOT_STARTED:
@@ -95,6 +133,154 @@ public class Conversion implements Serializable {
     public void addDamageEvent(String description, String technicianNotes) {
         DamageEvent event = new DamageEvent(description, technicianNotes);
         damageHistory.add(event);
+        markDirty();
+    }
+
+    /**
+     * Flag this conversion as changed so the next save re-encodes it
+     */
+    public synchronized void markDirty() {
+        dirty = true;
+        cachedFragment = null;
+        revision++;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    synchronized int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Serialized JSON of the last saved state, or null if it has to be encoded again
+     */
+    synchronized String getCachedFragment() {
+        return dirty ? null : cachedFragment;
+    }
+
+    synchronized void markClean(String fragment) {
+        cachedFragment = fragment;
+        dirty = false;
+    }
+
+    /**
+     * Mark clean after a save, unless the conversion changed again since the saved revision
+     */
+    synchronized void markClean(String fragment, int savedRevision) {
+        if (revision == savedRevision) {
+            markClean(fragment);
+        }
+    }
+
+    /**
+     * Independent copy of this conversion's saved fields, for writing on another thread
+     */
+    synchronized Conversion copy() {
+        Conversion copy = new Conversion(id, name);
+        copy.type = type;
+        copy.status = status;
+        copy.note = note;
+        copy.technicianNotes = technicianNotes;
+        copy.isDataOnly = isDataOnly;
+        copy.duration = duration;
+        copy.dateOfConversion = dateOfConversion != null ? new Date(dateOfConversion.day, dateOfConversion.month, dateOfConversion.year) : null;
+        copy.timeOfConversion = timeOfConversion != null ? new Time(timeOfConversion.hour, timeOfConversion.minute, timeOfConversion.am_pm) : null;
+        copy.linkedFiles = linkedFiles != null ? new ArrayList<>(linkedFiles) : new ArrayList<>();
+        copy.damageHistory = new ArrayList<>();
+        if (damageHistory != null) {
+            for (DamageEvent event : damageHistory) {
+                DamageEvent eventCopy = new DamageEvent(event.description, event.technicianNotes);
+                eventCopy.timestamp = event.timestamp;
+                copy.damageHistory.add(eventCopy);
+            }
+        }
+        return copy;
+    }
+
+    void setDetailsSource(ProjectIndex source) {
+        detailsSource = source;
+        markClean(null);
+    }
+
+    ProjectIndex getDetailsSource() {
+        return detailsSource;
+    }
+
+    /**
+     * Whether notes, dates, damage history and linked files have been read from the project file
+     */
+    public boolean isDetailsLoaded() {
+        return detailsSource == null;
+    }
+
+    /**
+     * A copy of the linked files that never reads the project file: while only the summary is
+     * loaded, the files the project index lists. Take it on the thread that edits the conversion;
+     * it doesn't wait for a details load running in the background.
+     */
+    public List<FileReference> copyLinkedFiles() {
+        // A load sets linkedFiles before clearing indexedLinks, so one of the two is always complete
+        List<FileReference> files = indexedLinks;
+        if (files == null) {
+            files = linkedFiles;
+        }
+        return files != null ? new ArrayList<>(files) : new ArrayList<>();
+    }
+
+    /**
+     * Read the rest of this conversion from the project file if it was opened from the index
+     */
+    public synchronized void loadDetails() {
+        ProjectIndex source = detailsSource;
+        if (source == null) {
+            return;
+        }
+
+        try {
+            String fragment = source.readFragment(id);
+            Conversion loaded = ProjectCodec.fromJsonObject(ProjectCodec.parseFragment(fragment));
+            name = loaded.name;
+            type = loaded.type;
+            status = loaded.status;
+            note = loaded.note;
+            technicianNotes = loaded.technicianNotes;
+            dateOfConversion = loaded.dateOfConversion;
+            timeOfConversion = loaded.timeOfConversion;
+            duration = loaded.duration;
+            isDataOnly = loaded.isDataOnly;
+            damageHistory = loaded.damageHistory;
+            linkedFiles = keepCheckedLinks(loaded.linkedFiles);
+            indexedLinks = null;
+            detailsSource = null;
+            markClean(fragment);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load conversion " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Swap freshly read links for the ones the index listed at the same path, which carry the
+     * background link check's results; the fingerprints come from the freshly read ones.
+     */
+    private ArrayList<FileReference> keepCheckedLinks(ArrayList<FileReference> files) {
+        List<FileReference> indexed = indexedLinks;
+        if (indexed == null || files == null) {
+            return files;
+        }
+        Map<String, FileReference> checked = new HashMap<>();
+        for (FileReference file : indexed) {
+            checked.put(file.getPath(), file);
+        }
+        for (int i = 0; i < files.size(); i++) {
+            FileReference known = checked.get(files.get(i).getPath());
+            if (known != null) {
+                known.setFingerprint(files.get(i).getFingerprint());
+                files.set(i, known);
+            }
+        }
+        return files;
     }
 
     public static class DamageEvent implements Serializable {
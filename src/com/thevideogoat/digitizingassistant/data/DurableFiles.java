@@ -0,0 +1,74 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers for writing project files so a crash or power loss leaves either the old file or
+ * the new one, never a truncated mix. Files are written to a temp file next to the target,
+ * flushed to disk and then renamed over it in one step.
+ */
+public final class DurableFiles {
+
+    private DurableFiles() {
+    }
+
+    /**
+     * Flush a finished temp file to disk and atomically move it over the target
+     */
+    public static void replace(Path temp, Path target) throws IOException {
+        sync(temp);
+        move(temp, target);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Atomically move a file over the target without flushing it first. Only for files that
+     * are validated on read and can be rebuilt, like the project index.
+     */
+    public static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Some network shares can't rename atomically; a plain replace is the best they offer
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Force a file's contents to disk
+     */
+    public static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Force everything written through a stream to disk. The stream must already be flushed.
+     */
+    public static void sync(FileOutputStream out) throws IOException {
+        out.getChannel().force(false);
+    }
+
+    /**
+     * Make a rename in the directory durable. Not every platform can open a directory
+     * (Windows can't), and there the rename is already durable once it returns.
+     */
+    private static void syncDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+}
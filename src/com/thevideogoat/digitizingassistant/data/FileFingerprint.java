@@ -0,0 +1,100 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * A cheap identity for a file that survives renames and moves: its size, plus a hash of its
+ * first and last megabyte. Computing one reads at most two megabytes however large the capture
+ * is, and since the size is part of it, looking for a file by fingerprint never needs to read a
+ * file of any other size.
+ *
+ * Written as "size:hash" with the hash in hex, see {@link #toString()} and {@link #parse(String)}.
+ */
+public final class FileFingerprint implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int SAMPLE_SIZE = 1024 * 1024;
+
+    public final long size;
+    // CRC-32C of the first sample in the high half, of the last sample in the low half
+    public final long hash;
+
+    public FileFingerprint(long size, long hash) {
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * Read the fingerprint of a regular file. A file of two samples or less is hashed whole.
+     */
+    public static FileFingerprint of(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+            long headEnd = Math.min(size, SAMPLE_SIZE);
+            long head = checksum(channel, 0, headEnd, buffer);
+            long tail = checksum(channel, Math.max(headEnd, size - SAMPLE_SIZE), size, buffer);
+            return new FileFingerprint(size, head << 32 | tail);
+        }
+    }
+
+    /**
+     * The fingerprint written by {@link #toString()}, or null if the text isn't one
+     */
+    public static FileFingerprint parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        int colon = text.indexOf(':');
+        try {
+            return colon > 0 ? new FileFingerprint(Long.parseLong(text.substring(0, colon)),
+                Long.parseUnsignedLong(text.substring(colon + 1), 16)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(FileChannel channel, long start, long end, ByteBuffer buffer) throws IOException {
+        CRC32C crc = new CRC32C();
+        long position = start;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("File shrank while being read");
+            }
+            position += read;
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return crc.getValue();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        FileFingerprint that = (FileFingerprint) obj;
+        return size == that.size && hash == that.hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size) * 31 + Long.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return size + ":" + Long.toHexString(hash);
+    }
+}
@@ -1,32 +1,67 @@
 package com.thevideogoat.digitizingassistant.data;
 
+import com.thevideogoat.digitizingassistant.util.FileProbe;
+
 import java.io.File;
+import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
 
 /**
  * Lightweight file reference that stores only the path and loads File objects on demand.
  * This reduces memory usage when projects have many linked files.
+ *
+ * A reference may also carry the file's fingerprint, so the file can still be found after it
+ * is renamed or moved outside the app (see {@link RelinkService#performFingerprintRelink}).
  */
 public class FileReference implements Serializable {
     
     @Serial
     private static final long serialVersionUID = 1L;
     
+    /**
+     * What a check found: the file is there, it is certainly gone, or nobody can tell because its
+     * drive or share isn't answering (or the check failed some other way)
+     */
+    public enum Presence {
+        PRESENT, MISSING, UNKNOWN
+    }
+    
     private final String filePath;
+    private volatile FileFingerprint fingerprint;
     private transient File cachedFile;
     private transient Long cachedSize;
-    private transient Boolean cachedExists;
+    private transient volatile Boolean cachedExists;
     
     public FileReference(String filePath) {
         this.filePath = filePath;
     }
     
+    public FileReference(String filePath, FileFingerprint fingerprint) {
+        this.filePath = filePath;
+        this.fingerprint = fingerprint;
+    }
+    
     public FileReference(File file) {
         this.filePath = file.getAbsolutePath();
         this.cachedFile = file;
     }
     
+    /**
+     * A reference to the same content at a new path, keeping the fingerprint
+     */
+    public FileReference movedTo(File file) {
+        FileReference moved = new FileReference(file);
+        moved.fingerprint = fingerprint;
+        return moved;
+    }
+    
     public String getPath() {
         return filePath;
     }
@@ -42,23 +77,103 @@ public class FileReference implements Serializable {
     }
     
     /**
-     * Check if file exists, with caching
+     * Check if file exists, with caching. While the file's drive or share isn't responding this
+     * answers from the last check, or false if there hasn't been one.
      */
     public boolean exists() {
-        if (cachedExists == null) {
-            cachedExists = getFile().exists();
+        Boolean exists = cachedExists;
+        if (exists == null) {
+            exists = readAttributes();
         }
-        return cachedExists;
+        return Boolean.TRUE.equals(exists);
+    }
+    
+    /**
+     * Like {@link #exists()}, but telling a missing file apart from one that can't be checked
+     * right now. Only MISSING means the file is gone.
+     */
+    public Presence presence() {
+        Boolean exists = cachedExists;
+        if (exists == null) {
+            exists = readAttributes();
+        }
+        return exists == null ? Presence.UNKNOWN : exists ? Presence.PRESENT : Presence.MISSING;
+    }
+    
+    /**
+     * Whether the last existence check found the file missing. Never touches the filesystem.
+     */
+    public boolean isKnownMissing() {
+        return Boolean.FALSE.equals(cachedExists);
     }
     
     /**
      * Get file size, with caching
      */
     public long length() {
-        if (cachedSize == null) {
-            cachedSize = exists() ? getFile().length() : 0L;
+        Long size = cachedSize;
+        if (size == null) {
+            readAttributes();
+            size = cachedSize;
+        }
+        return size != null ? size : 0L;
+    }
+
+    /**
+     * Read existence and size in one stat. Returns null, caching nothing, unless the stat gave a
+     * clear answer: a file that isn't there, rather than a storage root that isn't responding or
+     * a read that failed.
+     */
+    private Boolean readAttributes() {
+        Path path;
+        try {
+            path = getFile().toPath();
+        } catch (InvalidPathException e) {
+            cachedSize = 0L;
+            cachedExists = false;
+            return false;
+        }
+        Optional<BasicFileAttributes> attributes = FileProbe.getInstance().call(path, () -> {
+            try {
+                return Optional.of(Files.readAttributes(path, BasicFileAttributes.class));
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            } catch (IOException | SecurityException e) {
+                return null;
+            }
+        }, null);
+        if (attributes == null) {
+            return null;
+        }
+        cachedSize = attributes.map(BasicFileAttributes::size).orElse(0L);
+        cachedExists = attributes.isPresent();
+        return cachedExists;
+    }
+    
+    public FileFingerprint getFingerprint() {
+        return fingerprint;
+    }
+    
+    public void setFingerprint(FileFingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+    
+    /**
+     * Record the file's fingerprint if it has none yet or the file's size has changed since.
+     * Only then is the file read. Returns whether the fingerprint changed.
+     */
+    public boolean updateFingerprint() {
+        FileFingerprint current = fingerprint;
+        if (!exists() || current != null && current.size == length() || !getFile().isFile()) {
+            return false;
+        }
+        try {
+            fingerprint = FileFingerprint.of(getFile().toPath());
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            System.err.println("Could not fingerprint " + filePath + ": " + e.getMessage());
+            return false;
         }
-        return cachedSize;
     }
     
     /**
@@ -34,6 +34,16 @@ public class Preferences {
     private boolean relinkByNote = true;
     private boolean relinkByTitle = true;
     private boolean relinkByTrimmed = true;
+    private boolean relinkByFuzzy = false;
+
+    // Project loading
+    private boolean lazyLoadProjects = true;
+    private boolean binaryProjectFormat = false;
+    private int autosaveDelaySeconds = 30;
+
+    // File scanning
+    private int maxConcurrentScansPerDevice = 0;
+    private int statTimeoutMillis = 3000;
     
     private Preferences() {
         // Default values
@@ -115,6 +125,24 @@ public class Preferences {
                 relinkByNote = Boolean.parseBoolean(props.getProperty("relink.byNote", Boolean.toString(relinkByNote)));
                 relinkByTitle = Boolean.parseBoolean(props.getProperty("relink.byTitle", Boolean.toString(relinkByTitle)));
                 relinkByTrimmed = Boolean.parseBoolean(props.getProperty("relink.byTrimmed", Boolean.toString(relinkByTrimmed)));
+                relinkByFuzzy = Boolean.parseBoolean(props.getProperty("relink.byFuzzy", Boolean.toString(relinkByFuzzy)));
+
+                // Project loading
+                lazyLoadProjects = Boolean.parseBoolean(props.getProperty("project.lazyLoad", Boolean.toString(lazyLoadProjects)));
+                binaryProjectFormat = Boolean.parseBoolean(props.getProperty("project.binaryFormat", Boolean.toString(binaryProjectFormat)));
+                try {
+                    autosaveDelaySeconds = Integer.parseInt(props.getProperty("project.autosaveSeconds", Integer.toString(autosaveDelaySeconds)));
+                } catch (NumberFormatException e) {
+                    // Keep the default
+                }
+
+                // File scanning
+                try {
+                    maxConcurrentScansPerDevice = Integer.parseInt(props.getProperty("storage.maxConcurrentScans", Integer.toString(maxConcurrentScansPerDevice)));
+                    statTimeoutMillis = Integer.parseInt(props.getProperty("storage.statTimeoutMillis", Integer.toString(statTimeoutMillis)));
+                } catch (NumberFormatException e) {
+                    // Keep the default
+                }
             } catch (IOException e) {
                 // Use defaults if loading fails
                 System.err.println("Could not load preferences: " + e.getMessage());
@@ -152,6 +180,14 @@ public class Preferences {
             props.setProperty("relink.byNote", Boolean.toString(relinkByNote));
             props.setProperty("relink.byTitle", Boolean.toString(relinkByTitle));
             props.setProperty("relink.byTrimmed", Boolean.toString(relinkByTrimmed));
+            props.setProperty("relink.byFuzzy", Boolean.toString(relinkByFuzzy));
+
+            // Project loading
+            props.setProperty("project.lazyLoad", Boolean.toString(lazyLoadProjects));
+            props.setProperty("project.binaryFormat", Boolean.toString(binaryProjectFormat));
+            props.setProperty("project.autosaveSeconds", Integer.toString(autosaveDelaySeconds));
+            props.setProperty("storage.maxConcurrentScans", Integer.toString(maxConcurrentScansPerDevice));
+            props.setProperty("storage.statTimeoutMillis", Integer.toString(statTimeoutMillis));
             
             try (FileOutputStream fos = new FileOutputStream(prefsFile)) {
                 props.store(fos, "Digitizing Assistant Preferences");
@@ -202,4 +238,23 @@ public class Preferences {
     public void setRelinkByTitle(boolean v) { this.relinkByTitle = v; savePreferences(); }
     public boolean isRelinkByTrimmed() { return relinkByTrimmed; }
     public void setRelinkByTrimmed(boolean v) { this.relinkByTrimmed = v; savePreferences(); }
+    public boolean isRelinkByFuzzy() { return relinkByFuzzy; }
+    public void setRelinkByFuzzy(boolean v) { this.relinkByFuzzy = v; savePreferences(); }
+
+    // Project loading getters/setters
+    public boolean isLazyLoadProjects() { return lazyLoadProjects; }
+    public void setLazyLoadProjects(boolean v) { this.lazyLoadProjects = v; savePreferences(); }
+    public boolean isBinaryProjectFormat() { return binaryProjectFormat; }
+    public void setBinaryProjectFormat(boolean v) { this.binaryProjectFormat = v; savePreferences(); }
+    // Seconds without edits before a project is saved automatically; 0 turns autosave off
+    public int getAutosaveDelaySeconds() { return autosaveDelaySeconds; }
+    public void setAutosaveDelaySeconds(int v) { this.autosaveDelaySeconds = v; savePreferences(); }
+
+    // Threads scanning one storage device at once; 0 picks a default from the device type
+    public int getMaxConcurrentScansPerDevice() { return maxConcurrentScansPerDevice; }
+    public void setMaxConcurrentScansPerDevice(int v) { this.maxConcurrentScansPerDevice = v; savePreferences(); }
+
+    // How long a file check may take before its drive or share is treated as unreachable
+    public int getStatTimeoutMillis() { return statTimeoutMillis; }
+    public void setStatTimeoutMillis(int v) { this.statTimeoutMillis = v; savePreferences(); }
 } 
\ No newline at end of file
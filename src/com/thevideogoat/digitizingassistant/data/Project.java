@@ -1,19 +1,13 @@
 package com.thevideogoat.digitizingassistant.data;
 
 import com.thevideogoat.digitizingassistant.ui.DigitizingAssistant;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.thevideogoat.digitizingassistant.util.Metrics;
 
 import java.awt.*;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Duration;
 import java.util.ArrayList;
 
 public class Project implements Serializable {
@@ -23,10 +17,14 @@ public class Project implements Serializable {
     
     String name;
     ArrayList<Conversion> conversions;
+    private transient ProjectJournal journal;
+    // Saved as .tvgp rather than JSON
+    private transient boolean binaryFormat;
 
     public Project(String name){
         conversions = new ArrayList<>();
         this.name = name;
+        this.binaryFormat = Preferences.getInstance().isBinaryProjectFormat();
     }
 
     public Project (Path source){
@@ -54,106 +52,43 @@ public class Project implements Serializable {
     }
 
     public Project(File jsonFile) {
+        this.conversions = new ArrayList<>();
+        long start = System.nanoTime();
         try {
-            // Read the JSON file
-            String jsonContent = new String(Files.readAllBytes(jsonFile.toPath()));
-            JsonObject jsonObject = JsonParser.parseString(jsonContent).getAsJsonObject();
-            
-            // Parse project name
-            this.name = jsonObject.get("name").getAsString();
-            this.conversions = new ArrayList<>();
-            
-            // Parse conversions
-            JsonArray conversionsArray = jsonObject.getAsJsonArray("conversions");
-            for (JsonElement element : conversionsArray) {
-                JsonObject conversionJson = element.getAsJsonObject();
-                Conversion conversion = new Conversion(conversionJson.get("name").getAsString());
-                conversion.type = Type.fromDisplayName(conversionJson.get("type").getAsString());
-                
-                // Handle status by display name
-                String statusStr = conversionJson.get("status").getAsString();
-                for (ConversionStatus status : ConversionStatus.values()) {
-                    if (status.toString().equals(statusStr)) {
-                        conversion.status = status;
-                        break;
-                    }
-                }
-                
-                // Handle damage history for version 1.6+
-                if (conversionJson.has("damageHistory")) {
-                    JsonArray damageArray = conversionJson.getAsJsonArray("damageHistory");
-                    conversion.damageHistory = new ArrayList<>();
-                    for (JsonElement damageElement : damageArray) {
-                        JsonObject damageJson = damageElement.getAsJsonObject();
-                        String description = damageJson.get("description").getAsString();
-                        String techNotes = damageJson.has("technicianNotes") ? 
-                            damageJson.get("technicianNotes").getAsString() : "";
-                        conversion.addDamageEvent(description, techNotes);
-                    }
-                }
-                
-                conversion.note = conversionJson.get("note").getAsString();
-                
-                // Handle new fields for version 1.5
-                if (conversionJson.has("technicianNotes")) {
-                    conversion.technicianNotes = conversionJson.get("technicianNotes").getAsString();
-                } else {
-                    conversion.technicianNotes = "";
-                }
-                
-                // Handle conversion date and time to preserve original timestamps
-                if (conversionJson.has("dateOfConversion")) {
-                    String dateStr = conversionJson.get("dateOfConversion").getAsString();
-                    // Parse the date string (format: "MM/DD/YYYY")
-                    String[] dateParts = dateStr.split("/");
-                    if (dateParts.length == 3) {
-                        // Date constructor expects (day, month, year) but toString() returns "MM/DD/YYYY"
-                        conversion.dateOfConversion = new Date(dateParts[1], dateParts[0], dateParts[2]);
-                    }
-                } else {
-                    // Do not assign "now" when absent in JSON; leave null
-                    conversion.dateOfConversion = null;
-                }
-                
-                if (conversionJson.has("timeOfConversion")) {
-                    String timeStr = conversionJson.get("timeOfConversion").getAsString();
-                    // Parse the time string (format: "HH:MM AM/PM")
-                    String[] timeParts = timeStr.split(" ");
-                    if (timeParts.length == 2) {
-                        String[] hourMin = timeParts[0].split(":");
-                        if (hourMin.length == 2) {
-                            conversion.timeOfConversion = new Time(hourMin[0], hourMin[1], timeParts[1]);
-                        }
-                    }
-                } else {
-                    conversion.timeOfConversion = null;
-                }
-                
-                if (conversionJson.has("isDataOnly")) {
-                    conversion.isDataOnly = conversionJson.get("isDataOnly").getAsBoolean();
-                } else {
-                    conversion.isDataOnly = false;
-                }
-                
-                conversion.duration = Duration.parse(conversionJson.get("duration").getAsString());
-                
-                // Handle linked files
-                if (conversionJson.has("linkedFiles")) {
-                    JsonArray linkedFilesArray = conversionJson.getAsJsonArray("linkedFiles");
-                    conversion.linkedFiles = new ArrayList<>();
-                    for (JsonElement fileElement : linkedFilesArray) {
-                        String filePath = fileElement.getAsString();
-                        FileReference fileRef = new FileReference(filePath);
-                        if (fileRef.exists()) {
-                            conversion.linkedFiles.add(fileRef);
-                        }
-                    }
+            if (ProjectBinaryCodec.isBinaryProjectFile(jsonFile)) {
+                ProjectCodec.Header header = ProjectBinaryCodec.read(jsonFile, conversions::add);
+                this.name = header.name;
+                this.binaryFormat = true;
+                return;
+            }
+
+            ProjectIndex index = ProjectIndex.load(jsonFile);
+            if (index != null && Preferences.getInstance().isLazyLoadProjects()) {
+                // Open from the index alone; each conversion's details are read when first needed.
+                // Conversions touched by the journal are read in full as it is replayed.
+                this.name = index.getProjectName();
+                for (ProjectIndex.Entry entry : index.getEntries()) {
+                    conversions.add(index.createStub(entry));
                 }
-                
-                this.conversions.add(conversion);
+                journal = new ProjectJournal(jsonFile, index);
+                journal.open(this, index.getJournalSeq(), false);
+                return;
             }
+
+            // Stream conversions straight into the project instead of building a document tree
+            ProjectCodec.Header header = ProjectCodec.read(jsonFile, conversions::add);
+            this.name = header.name;
+
+            // Apply any changes saved to the journal after the file was last written in full
+            journal = new ProjectJournal(jsonFile, index);
+            journal.open(this, header.journalSeq, header.missingIds);
+
+            // Linked files are checked in the background once the project is open (see LinkValidator);
+            // missing ones are reported rather than dropped
         } catch (IOException e) {
             throw new RuntimeException("Failed to read JSON file: " + e.getMessage(), e);
+        } finally {
+            Metrics.getInstance().recordProjectLoad(System.nanoTime() - start);
         }
     }
 
@@ -162,69 +97,109 @@ public class Project implements Serializable {
     }
 
     public void saveToFile(Path destination) {
-        File projectFile = Paths.get(destination.toString(), name + ".json").toFile();
+        if (journal == null || !journal.getProjectFile().equals(getProjectFile(destination))) {
+            // Summary-only conversions read from the old file, so bring them fully into memory first
+            loadAllDetails();
+        }
+        try {
+            writeFull(snapshot(), destination);
+        } catch (IOException e) {
+            throw new Error("Failed to save project to file.", e);
+        }
+    }
 
+    /**
+     * Save only the conversions that changed since the last save by appending them to the
+     * project's journal. Falls back to a full write when there is no journal for the destination yet.
+     */
+    public void saveChanges(Path destination) {
         try {
-            // Create JSON object
-            JsonObject projectJson = new JsonObject();
-            projectJson.addProperty("name", name);
-            projectJson.addProperty("version", DigitizingAssistant.VERSION);
-            
-            // Add conversions
-            JsonArray conversionsArray = new JsonArray();
-            for (Conversion conversion : conversions) {
-                JsonObject conversionJson = new JsonObject();
-                conversionJson.addProperty("name", conversion.name);
-                conversionJson.addProperty("type", conversion.type.toString());
-                conversionJson.addProperty("status", conversion.status.toString());
-                conversionJson.addProperty("note", conversion.note);
-                conversionJson.addProperty("technicianNotes", conversion.technicianNotes);
-                conversionJson.addProperty("isDataOnly", conversion.isDataOnly);
-                conversionJson.addProperty("duration", conversion.duration.toString());
-                
-                // Save conversion date and time to preserve original timestamps
-                if (conversion.dateOfConversion != null) {
-                    conversionJson.addProperty("dateOfConversion", conversion.dateOfConversion.toString());
-                }
-                if (conversion.timeOfConversion != null) {
-                    conversionJson.addProperty("timeOfConversion", conversion.timeOfConversion.toString());
-                }
-                
-                // Add damage history for version 1.6+
-                if (conversion.damageHistory != null && !conversion.damageHistory.isEmpty()) {
-                    JsonArray damageArray = new JsonArray();
-                    for (Conversion.DamageEvent event : conversion.damageHistory) {
-                        JsonObject damageJson = new JsonObject();
-                        damageJson.addProperty("timestamp", event.timestamp.toString());
-                        damageJson.addProperty("description", event.description);
-                        damageJson.addProperty("technicianNotes", event.technicianNotes);
-                        damageArray.add(damageJson);
-                    }
-                    conversionJson.add("damageHistory", damageArray);
-                }
-                
-                // Add linked files
-                JsonArray linkedFilesArray = new JsonArray();
-                if (conversion.linkedFiles != null) {
-                    for (FileReference fileRef : conversion.linkedFiles) {
-                        linkedFilesArray.add(fileRef.getPath());
-                    }
-                }
-                conversionJson.add("linkedFiles", linkedFilesArray);
-                
-                conversionsArray.add(conversionJson);
-            }
-            projectJson.add("conversions", conversionsArray);
-            
-            // Write to file
-            try (FileWriter writer = new FileWriter(projectFile)) {
-                new GsonBuilder().setPrettyPrinting().create().toJson(projectJson, writer);
-            }
+            writeChanges(snapshot(), destination);
         } catch (IOException e) {
             throw new Error("Failed to save project to file.", e);
         }
     }
 
+    /**
+     * Capture the project for writing on another thread. Must be called from the thread that edits it.
+     */
+    public ProjectSnapshot snapshot() throws IOException {
+        return ProjectSnapshot.of(this);
+    }
+
+    /**
+     * Write a snapshot in full, replacing the project file
+     */
+    public synchronized void writeFull(ProjectSnapshot snapshot, Path destination) throws IOException {
+        File projectFile = getProjectFile(destination, snapshot);
+        if (snapshot.binaryFormat) {
+            // Binary files are small and fast to write, so they are always rewritten whole
+            File temp = new File(projectFile.getParentFile(), projectFile.getName() + ".tmp");
+            ProjectBinaryCodec.write(temp, snapshot.name, snapshot.copies());
+            DurableFiles.replace(temp.toPath(), projectFile.toPath());
+            snapshot.markWritten();
+            return;
+        }
+
+        if (journal == null || !journal.getProjectFile().equals(projectFile)) {
+            journal = new ProjectJournal(projectFile, null);
+        }
+        journal.writeSnapshot(snapshot);
+    }
+
+    /**
+     * Write what changed in a snapshot, appending to the journal where there is one
+     */
+    public synchronized void writeChanges(ProjectSnapshot snapshot, Path destination) throws IOException {
+        File projectFile = getProjectFile(destination, snapshot);
+        if (snapshot.binaryFormat || journal == null || !journal.getProjectFile().equals(projectFile) || !projectFile.exists()) {
+            writeFull(snapshot, destination);
+            return;
+        }
+        journal.append(snapshot);
+    }
+
+    /**
+     * Make sure every conversion has been read in full, for operations that look at all of them
+     */
+    public void loadAllDetails() {
+        for (Conversion conversion : conversions) {
+            conversion.loadDetails();
+        }
+    }
+
+    /**
+     * Save the project in the other file format and remove the old file and its journal and index
+     */
+    public synchronized void convertFormat(Path destination, boolean binary) {
+        if (binary == binaryFormat) {
+            return;
+        }
+        loadAllDetails();
+        File oldFile = getProjectFile(destination);
+        binaryFormat = binary;
+        journal = null;
+        saveToFile(destination);
+
+        oldFile.delete();
+        ProjectJournal.journalFileFor(oldFile).delete();
+        ProjectIndex.indexFileFor(oldFile).delete();
+    }
+
+    public boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
+    private File getProjectFile(Path destination) {
+        String extension = binaryFormat ? ProjectBinaryCodec.EXTENSION : ".json";
+        return Paths.get(destination.toString(), name + extension).toFile();
+    }
+
+    private static File getProjectFile(Path destination, ProjectSnapshot snapshot) {
+        String extension = snapshot.binaryFormat ? ProjectBinaryCodec.EXTENSION : ".json";
+        return Paths.get(destination.toString(), snapshot.name + extension).toFile();
+    }
+
     public String getName(){
         return this.name;
     }
@@ -0,0 +1,314 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import com.thevideogoat.digitizingassistant.ui.DigitizingAssistant;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Compact binary project format (.tvgp) for very large projects.
+ *
+ * Layout, all integers big-endian:
+ *   header       magic, format version, project name and app version (string indices),
+ *                string count, conversion count and the positions of the sections below
+ *   string table every distinct string once (ids, statuses, types, dates, parent directories,
+ *                file names...), preceded by a table of their offsets
+ *   records      one fixed-width record per conversion holding its scalars as string indices
+ *   extras       int triples for linked files (directory, file name, fingerprint) and for
+ *                damage events (timestamp, description, technician notes)
+ *
+ * Version 1 files, whose linked files are pairs without a fingerprint, still load.
+ *
+ * Files are read in one pass into a heap buffer and strings are decoded at most once each. The
+ * file isn't memory-mapped: a mapping stays open until it is garbage collected, and on Windows
+ * an open mapping keeps the next save from replacing the file.
+ * JSON stays the interchange format; see {@link ProjectCodec}.
+ */
+public final class ProjectBinaryCodec {
+
+    public static final String EXTENSION = ".tvgp";
+
+    private static final int MAGIC = 0x54564750; // "TVGP"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 48;
+    private static final int RECORD_SIZE = 64;
+    private static final int NO_STRING = -1;
+    private static final int FLAG_DATA_ONLY = 1;
+
+    private ProjectBinaryCodec() {
+    }
+
+    public static boolean isBinaryProjectFile(File file) {
+        return file.getName().toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * Read a binary project file, handing each conversion to the handler in order
+     */
+    public static ProjectCodec.Header read(File file, ProjectCodec.ConversionHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = readFully(channel, file);
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary project file: " + file.getName());
+            }
+            int version = buffer.getInt(4);
+            if (version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Unsupported binary project version " + version);
+            }
+            int linkedFileInts = version >= 2 ? 3 : 2;
+
+            int nameIndex = buffer.getInt(8);
+            int versionIndex = buffer.getInt(12);
+            int stringCount = buffer.getInt(16);
+            int conversionCount = buffer.getInt(20);
+            int stringTablePos = (int) buffer.getLong(24);
+            int recordsPos = (int) buffer.getLong(32);
+            int extrasPos = (int) buffer.getLong(40);
+
+            StringTable strings = new StringTable(buffer, stringTablePos, stringCount);
+            ProjectCodec.Header header = new ProjectCodec.Header();
+            header.name = strings.get(nameIndex);
+            header.version = strings.get(versionIndex);
+
+            Map<String, ConversionStatus> statuses = new HashMap<>();
+            for (ConversionStatus status : ConversionStatus.values()) {
+                statuses.put(status.toString(), status);
+            }
+
+            for (int i = 0; i < conversionCount; i++) {
+                int record = recordsPos + i * RECORD_SIZE;
+                Conversion conversion = new Conversion(strings.get(buffer.getInt(record)), strings.get(buffer.getInt(record + 4)));
+
+                String type = strings.get(buffer.getInt(record + 8));
+                if (type != null) {
+                    conversion.type = Type.fromDisplayName(type);
+                }
+                ConversionStatus status = statuses.get(strings.get(buffer.getInt(record + 12)));
+                if (status != null) {
+                    conversion.status = status;
+                }
+                conversion.note = orEmpty(strings.get(buffer.getInt(record + 16)));
+                conversion.technicianNotes = orEmpty(strings.get(buffer.getInt(record + 20)));
+                conversion.dateOfConversion = ProjectCodec.parseDate(strings.get(buffer.getInt(record + 24)));
+                conversion.timeOfConversion = ProjectCodec.parseTime(strings.get(buffer.getInt(record + 28)));
+                conversion.duration = Duration.ofSeconds(buffer.getLong(record + 32), buffer.getInt(record + 40));
+                conversion.isDataOnly = (buffer.get(record + 44) & FLAG_DATA_ONLY) != 0;
+
+                int linkedStart = buffer.getInt(record + 48);
+                int linkedCount = buffer.getInt(record + 52);
+                ArrayList<FileReference> linkedFiles = new ArrayList<>(linkedCount);
+                for (int j = 0; j < linkedCount; j++) {
+                    int pos = extrasPos + (linkedStart + j * linkedFileInts) * 4;
+                    String directory = strings.get(buffer.getInt(pos));
+                    String fileName = strings.get(buffer.getInt(pos + 4));
+                    FileFingerprint fingerprint = linkedFileInts > 2 ? FileFingerprint.parse(strings.get(buffer.getInt(pos + 8))) : null;
+                    linkedFiles.add(new FileReference(directory != null ? directory + fileName : fileName, fingerprint));
+                }
+                conversion.linkedFiles = linkedFiles;
+
+                int damageStart = buffer.getInt(record + 56);
+                int damageCount = buffer.getInt(record + 60);
+                ArrayList<Conversion.DamageEvent> damageHistory = new ArrayList<>(damageCount);
+                for (int j = 0; j < damageCount; j++) {
+                    int pos = extrasPos + (damageStart + j * 3) * 4;
+                    Conversion.DamageEvent event = new Conversion.DamageEvent(
+                        strings.get(buffer.getInt(pos + 4)),
+                        orEmpty(strings.get(buffer.getInt(pos + 8))));
+                    String timestamp = strings.get(buffer.getInt(pos));
+                    if (timestamp != null) {
+                        try {
+                            event.timestamp = LocalDateTime.parse(timestamp);
+                        } catch (DateTimeParseException e) {
+                            // Keep the load time for unreadable timestamps
+                        }
+                    }
+                    damageHistory.add(event);
+                }
+                conversion.damageHistory = damageHistory;
+
+                handler.accept(conversion);
+            }
+            return header;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Binary project file is truncated: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Write a complete binary project file
+     */
+    public static void write(File file, String name, Iterable<Conversion> conversions) throws IOException {
+        StringTableBuilder strings = new StringTableBuilder();
+        int nameIndex = strings.add(name);
+        int versionIndex = strings.add(DigitizingAssistant.VERSION);
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        ByteArrayOutputStream extraBytes = new ByteArrayOutputStream();
+        DataOutputStream extras = new DataOutputStream(extraBytes);
+        int extraInts = 0;
+        int conversionCount = 0;
+
+        for (Conversion conversion : conversions) {
+            records.writeInt(strings.add(conversion.id));
+            records.writeInt(strings.add(conversion.name));
+            records.writeInt(strings.add(conversion.type.toString()));
+            records.writeInt(strings.add(conversion.status.toString()));
+            records.writeInt(strings.add(conversion.note));
+            records.writeInt(strings.add(conversion.technicianNotes));
+            records.writeInt(strings.add(conversion.dateOfConversion != null ? conversion.dateOfConversion.toString() : null));
+            records.writeInt(strings.add(conversion.timeOfConversion != null ? conversion.timeOfConversion.toString() : null));
+            records.writeLong(conversion.duration.getSeconds());
+            records.writeInt(conversion.duration.getNano());
+            records.writeInt((conversion.isDataOnly ? FLAG_DATA_ONLY : 0) << 24);
+
+            List<FileReference> linkedFiles = conversion.linkedFiles != null ? conversion.linkedFiles : Collections.emptyList();
+            records.writeInt(extraInts);
+            records.writeInt(linkedFiles.size());
+            for (FileReference fileRef : linkedFiles) {
+                // Store the parent directory separately so files in the same folder share it
+                String path = fileRef.getPath();
+                int split = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+                extras.writeInt(split > 0 ? strings.add(path.substring(0, split)) : NO_STRING);
+                extras.writeInt(strings.add(path.substring(split)));
+                FileFingerprint fingerprint = fileRef.getFingerprint();
+                extras.writeInt(strings.add(fingerprint != null ? fingerprint.toString() : null));
+                extraInts += 3;
+            }
+
+            List<Conversion.DamageEvent> damageHistory = conversion.damageHistory != null ? conversion.damageHistory : Collections.emptyList();
+            records.writeInt(extraInts);
+            records.writeInt(damageHistory.size());
+            for (Conversion.DamageEvent event : damageHistory) {
+                extras.writeInt(strings.add(event.timestamp != null ? event.timestamp.toString() : null));
+                extras.writeInt(strings.add(event.description));
+                extras.writeInt(strings.add(event.technicianNotes));
+                extraInts += 3;
+            }
+            conversionCount++;
+        }
+
+        byte[] stringTable = strings.toBytes();
+        long stringTablePos = HEADER_SIZE;
+        long recordsPos = stringTablePos + stringTable.length;
+        long extrasPos = recordsPos + recordBytes.size();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(nameIndex);
+            out.writeInt(versionIndex);
+            out.writeInt(strings.size());
+            out.writeInt(conversionCount);
+            out.writeLong(stringTablePos);
+            out.writeLong(recordsPos);
+            out.writeLong(extrasPos);
+            out.write(stringTable);
+            recordBytes.writeTo(out);
+            extraBytes.writeTo(out);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, File file) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Binary project file is too large: " + file.getName());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Binary project file is truncated: " + file.getName());
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String orEmpty(String s) {
+        return s != null ? s : "";
+    }
+
+    /**
+     * Lazily decoded view of a string table held in a buffer.
+     */
+    private static class StringTable {
+        private final ByteBuffer buffer;
+        private final int offsetsPos;
+        private final int dataPos;
+        private final String[] decoded;
+
+        StringTable(ByteBuffer buffer, int pos, int count) {
+            this.buffer = buffer;
+            this.offsetsPos = pos;
+            this.dataPos = pos + count * 4;
+            this.decoded = new String[count];
+        }
+
+        String get(int index) {
+            if (index == NO_STRING) {
+                return null;
+            }
+            String s = decoded[index];
+            if (s == null) {
+                int pos = dataPos + buffer.getInt(offsetsPos + index * 4);
+                int length = buffer.getInt(pos);
+                byte[] bytes = new byte[length];
+                buffer.get(pos + 4, bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+                decoded[index] = s;
+            }
+            return s;
+        }
+    }
+
+    /**
+     * Assigns each distinct string an index, in first-seen order.
+     */
+    private static class StringTableBuilder {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int add(String s) {
+            if (s == null) {
+                return NO_STRING;
+            }
+            Integer index = indices.get(s);
+            if (index == null) {
+                index = strings.size();
+                indices.put(s, index);
+                strings.add(s);
+            }
+            return index;
+        }
+
+        int size() {
+            return strings.size();
+        }
+
+        byte[] toBytes() throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            DataOutputStream dataOut = new DataOutputStream(data);
+            int[] offsets = new int[strings.size()];
+            for (int i = 0; i < strings.size(); i++) {
+                offsets[i] = data.size();
+                byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                dataOut.writeInt(bytes.length);
+                dataOut.write(bytes);
+            }
+
+            ByteArrayOutputStream table = new ByteArrayOutputStream(offsets.length * 4 + data.size());
+            DataOutputStream tableOut = new DataOutputStream(table);
+            for (int offset : offsets) {
+                tableOut.writeInt(offset);
+            }
+            data.writeTo(tableOut);
+            return table.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import com.thevideogoat.digitizingassistant.ui.DigitizingAssistant;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+
+/**
+ * Streaming JSON codec for project files.
+ * Conversions are decoded and encoded one at a time through Gson's JsonReader/JsonWriter,
+ * so a project never needs a full document tree in memory.
+ */
+public final class ProjectCodec {
+
+    // Conversions sit two levels deep in a project file
+    private static final String FRAGMENT_INDENT = "    ";
+
+    private ProjectCodec() {
+    }
+
+    /**
+     * Receives conversions as they are decoded from a project file.
+     */
+    public interface ConversionHandler {
+        void accept(Conversion conversion) throws IOException;
+    }
+
+    /**
+     * Top-level project properties read alongside the conversions.
+     */
+    public static class Header {
+        public String name;
+        public String version;
+        /** Last journal sequence number already folded into this file */
+        public long journalSeq;
+        /** Whether any conversion had to be given a new id because the file predates ids */
+        public boolean missingIds;
+    }
+
+    /**
+     * Read a project file, handing each conversion to the handler as soon as it is decoded
+     */
+    public static Header read(File file, ConversionHandler handler) throws IOException {
+        try (JsonReader reader = newReader(file)) {
+            return read(reader, handler);
+        }
+    }
+
+    public static Header read(JsonReader reader, ConversionHandler handler) throws IOException {
+        Header header = new Header();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    header.name = nextString(reader, null);
+                    break;
+                case "version":
+                    header.version = nextString(reader, null);
+                    break;
+                case "journalSeq":
+                    header.journalSeq = reader.nextLong();
+                    break;
+                case "conversions":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        handler.accept(readConversion(reader, header));
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return header;
+    }
+
+    /**
+     * Write a complete project file, encoding conversions one at a time
+     */
+    public static void write(File file, String name, long journalSeq, Iterable<Conversion> conversions) throws IOException {
+        try (JsonWriter writer = newWriter(file)) {
+            beginProject(writer, name, journalSeq);
+            for (Conversion conversion : conversions) {
+                writeConversion(writer, conversion);
+            }
+            endProject(writer);
+        }
+    }
+
+    /**
+     * Write a complete project file from already-encoded conversion fragments, reporting the
+     * byte range each fragment ended up at so the file can be indexed
+     */
+    public static void writeFragments(File file, String name, long journalSeq, FragmentSource fragments) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8))) {
+            configure(writer);
+            beginProject(writer, name, journalSeq);
+            for (int i = 0; i < fragments.count(); i++) {
+                String fragment = fragments.fragment(i);
+                writer.jsonValue(fragment);
+                // Push the encoder's buffer through so the count covers the whole fragment
+                writer.flush();
+                int length = utf8Length(fragment);
+                fragments.written(i, counter.count - length, length);
+            }
+            endProject(writer);
+        }
+    }
+
+    /**
+     * Supplies encoded conversions, in order, for a project file being written.
+     */
+    public interface FragmentSource {
+        int count();
+
+        String fragment(int index) throws IOException;
+
+        /** Called once the fragment has been written at the given byte offset */
+        void written(int index, long offset, int length);
+    }
+
+    /**
+     * Return the conversion's serialized JSON, reusing the cached fragment when it hasn't changed
+     * since it was last written. The fragment is pretty-printed for its place in a project file.
+     */
+    public static String fragmentOf(Conversion conversion) throws IOException {
+        ProjectIndex detailsSource = conversion.getDetailsSource();
+        if (detailsSource != null) {
+            // Never encode a summary-only conversion; its full JSON is still in the project file
+            return detailsSource.readFragment(conversion.id);
+        }
+        String fragment = conversion.getCachedFragment();
+        if (fragment == null) {
+            StringWriter out = new StringWriter();
+            JsonWriter writer = new JsonWriter(out);
+            configure(writer);
+            writeConversion(writer, conversion);
+            fragment = out.toString().replace("\n", "\n" + FRAGMENT_INDENT);
+        }
+        return fragment;
+    }
+
+    public static JsonObject parseFragment(String fragment) {
+        return JsonParser.parseString(fragment).getAsJsonObject();
+    }
+
+    /**
+     * Write the top-level project properties and open the conversions array
+     */
+    static void beginProject(JsonWriter writer, String name, long journalSeq) throws IOException {
+        writer.beginObject();
+        writer.name("name").value(name);
+        writer.name("version").value(DigitizingAssistant.VERSION);
+        if (journalSeq > 0) {
+            writer.name("journalSeq").value(journalSeq);
+        }
+        writer.name("conversions").beginArray();
+    }
+
+    static void endProject(JsonWriter writer) throws IOException {
+        writer.endArray();
+        writer.endObject();
+    }
+
+    /**
+     * Decode a single conversion object. Missing optional fields fall back to the same
+     * defaults older project files have always loaded with; a missing id is replaced with a new one.
+     */
+    public static Conversion readConversion(JsonReader reader) throws IOException {
+        return readConversion(reader, null);
+    }
+
+    /**
+     * Decode a single conversion object, noting in the header if it had to be given a new id
+     */
+    private static Conversion readConversion(JsonReader reader, Header header) throws IOException {
+        String id = null, name = null, type = null, status = null, note = null, technicianNotes = null;
+        String dateStr = null, timeStr = null, duration = null;
+        boolean hasDate = false, hasTime = false, isDataOnly = false;
+        ArrayList<Conversion.DamageEvent> damageHistory = null;
+        ArrayList<FileReference> linkedFiles = null;
+        ArrayList<String> fingerprints = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = nextString(reader, null); break;
+                case "name": name = nextString(reader, null); break;
+                case "type": type = nextString(reader, null); break;
+                case "status": status = nextString(reader, null); break;
+                case "note": note = nextString(reader, ""); break;
+                case "technicianNotes": technicianNotes = nextString(reader, ""); break;
+                case "duration": duration = nextString(reader, null); break;
+                case "dateOfConversion":
+                    hasDate = true;
+                    dateStr = nextString(reader, null);
+                    break;
+                case "timeOfConversion":
+                    hasTime = true;
+                    timeStr = nextString(reader, null);
+                    break;
+                case "isDataOnly":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        isDataOnly = reader.nextBoolean();
+                    }
+                    break;
+                case "damageHistory":
+                    damageHistory = readDamageHistory(reader);
+                    break;
+                case "linkedFiles":
+                    linkedFiles = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String path = nextString(reader, null);
+                        if (path != null) {
+                            linkedFiles.add(new FileReference(path));
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case "linkedFileFingerprints":
+                    // One per linked file, in the same order; null where there is none
+                    fingerprints = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        fingerprints.add(nextString(reader, null));
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (name == null) {
+            throw new IOException("Conversion is missing a name at " + reader.getPath());
+        }
+
+        if (id == null && header != null) {
+            header.missingIds = true;
+        }
+        Conversion conversion = new Conversion(id, name);
+        if (type != null) {
+            conversion.type = Type.fromDisplayName(type);
+        }
+
+        // Handle status by display name
+        for (ConversionStatus s : ConversionStatus.values()) {
+            if (s.toString().equals(status)) {
+                conversion.status = s;
+                break;
+            }
+        }
+
+        if (damageHistory != null) {
+            conversion.damageHistory = damageHistory;
+        }
+        conversion.note = note != null ? note : "";
+        conversion.technicianNotes = technicianNotes != null ? technicianNotes : "";
+
+        // Handle conversion date and time to preserve original timestamps
+        if (hasDate) {
+            Date date = parseDate(dateStr);
+            if (date != null) {
+                conversion.dateOfConversion = date;
+            }
+        } else {
+            // Do not assign "now" when absent in JSON; leave null
+            conversion.dateOfConversion = null;
+        }
+
+        if (hasTime) {
+            Time time = parseTime(timeStr);
+            if (time != null) {
+                conversion.timeOfConversion = time;
+            }
+        } else {
+            conversion.timeOfConversion = null;
+        }
+
+        conversion.isDataOnly = isDataOnly;
+        if (duration != null) {
+            conversion.duration = Duration.parse(duration);
+        }
+        if (linkedFiles != null) {
+            if (fingerprints != null) {
+                for (int i = 0; i < linkedFiles.size() && i < fingerprints.size(); i++) {
+                    linkedFiles.get(i).setFingerprint(FileFingerprint.parse(fingerprints.get(i)));
+                }
+            }
+            conversion.linkedFiles = linkedFiles;
+        }
+        return conversion;
+    }
+
+    /**
+     * Encode a single conversion object using the project file schema
+     */
+    public static void writeConversion(JsonWriter writer, Conversion conversion) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(conversion.id);
+        writer.name("name").value(conversion.name);
+        writer.name("type").value(conversion.type.toString());
+        writer.name("status").value(conversion.status.toString());
+        writer.name("note").value(conversion.note);
+        writer.name("technicianNotes").value(conversion.technicianNotes);
+        writer.name("isDataOnly").value(conversion.isDataOnly);
+        writer.name("duration").value(conversion.duration.toString());
+
+        // Save conversion date and time to preserve original timestamps
+        if (conversion.dateOfConversion != null) {
+            writer.name("dateOfConversion").value(conversion.dateOfConversion.toString());
+        }
+        if (conversion.timeOfConversion != null) {
+            writer.name("timeOfConversion").value(conversion.timeOfConversion.toString());
+        }
+
+        if (conversion.damageHistory != null && !conversion.damageHistory.isEmpty()) {
+            writer.name("damageHistory").beginArray();
+            for (Conversion.DamageEvent event : conversion.damageHistory) {
+                writer.beginObject();
+                writer.name("timestamp").value(event.timestamp.toString());
+                writer.name("description").value(event.description);
+                writer.name("technicianNotes").value(event.technicianNotes);
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+
+        writer.name("linkedFiles").beginArray();
+        if (conversion.linkedFiles != null) {
+            for (FileReference fileRef : conversion.linkedFiles) {
+                writer.value(fileRef.getPath());
+            }
+        }
+        writer.endArray();
+        // Older versions skip this, so paths stay a plain list of strings
+        if (conversion.linkedFiles != null && conversion.linkedFiles.stream().anyMatch(f -> f.getFingerprint() != null)) {
+            writer.name("linkedFileFingerprints").beginArray();
+            for (FileReference fileRef : conversion.linkedFiles) {
+                FileFingerprint fingerprint = fileRef.getFingerprint();
+                if (fingerprint != null) {
+                    writer.value(fingerprint.toString());
+                } else {
+                    writer.nullValue();
+                }
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Encode a conversion into a standalone JSON tree, used for diffing and journal records
+     */
+    public static JsonObject toJsonObject(Conversion conversion) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setSerializeNulls(false);
+        writeConversion(writer, conversion);
+        return JsonParser.parseString(out.toString()).getAsJsonObject();
+    }
+
+    public static Conversion fromJsonObject(JsonObject json) throws IOException {
+        return readConversion(new JsonReader(new StringReader(json.toString())));
+    }
+
+    public static JsonReader newReader(File file) throws IOException {
+        return new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Create a writer that produces the same pretty-printed output as Gson's tree serializer
+     */
+    public static JsonWriter newWriter(File file) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)));
+        configure(writer);
+        return writer;
+    }
+
+    static void configure(JsonWriter writer) {
+        writer.setIndent("  ");
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(false);
+    }
+
+    private static ArrayList<Conversion.DamageEvent> readDamageHistory(JsonReader reader) throws IOException {
+        ArrayList<Conversion.DamageEvent> events = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String timestamp = null, description = null, techNotes = "";
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "timestamp": timestamp = nextString(reader, null); break;
+                    case "description": description = nextString(reader, null); break;
+                    case "technicianNotes": techNotes = nextString(reader, ""); break;
+                    default: reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            Conversion.DamageEvent event = new Conversion.DamageEvent(description, techNotes);
+            if (timestamp != null) {
+                try {
+                    event.timestamp = LocalDateTime.parse(timestamp);
+                } catch (DateTimeParseException e) {
+                    // Keep the load time for unreadable timestamps
+                }
+            }
+            events.add(event);
+        }
+        reader.endArray();
+        return events;
+    }
+
+    /**
+     * Parse a date written as "MM/DD/YYYY", or return null if it isn't in that form
+     */
+    static Date parseDate(String dateStr) {
+        // The Date constructor expects (day, month, year)
+        String[] dateParts = dateStr != null ? dateStr.split("/") : new String[0];
+        if (dateParts.length == 3) {
+            return new Date(dateParts[1], dateParts[0], dateParts[2]);
+        }
+        return null;
+    }
+
+    /**
+     * Parse a time written as "HH:MM AM/PM", or return null if it isn't in that form
+     */
+    static Time parseTime(String timeStr) {
+        String[] timeParts = timeStr != null ? timeStr.split(" ") : new String[0];
+        if (timeParts.length == 2) {
+            String[] hourMin = timeParts[0].split(":");
+            if (hourMin.length == 2) {
+                return new Time(hourMin[0], hourMin[1], timeParts[1]);
+            }
+        }
+        return null;
+    }
+
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Counts bytes on their way to the file. Flushes stop here so that flushing the JSON writer
+     * to take a count doesn't also force a disk write per conversion.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static String nextString(JsonReader reader, String fallback) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return fallback;
+        }
+        return reader.nextString();
+    }
+}
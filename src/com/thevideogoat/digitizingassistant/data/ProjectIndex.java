@@ -0,0 +1,227 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Small offset index stored next to a project's JSON file.
+ * It lists each conversion's id, name, status, type, date, duration and linked file paths
+ * together with the byte range of its JSON object, so a project can be opened, sorted and have
+ * its links checked from the index alone, and each conversion's notes and damage history read
+ * only when they are needed.
+ *
+ * The index records the length and modification time of the project file it describes and is
+ * ignored as soon as either no longer matches.
+ */
+public class ProjectIndex {
+
+    public static final String EXTENSION = ".index";
+
+    private static final int MAGIC = 0x54564749; // "TVGI"
+    private static final int FORMAT_VERSION = 2;
+
+    private final File projectFile;
+    private final File indexFile;
+    private String projectName;
+    private long journalSeq;
+    private List<Entry> entries;
+    private Map<String, Entry> entriesById;
+
+    /**
+     * Summary of one conversion and where its full JSON object sits in the project file.
+     */
+    public static class Entry {
+        public final String id, name, status, type;
+        // As written in the project file, or null when the conversion has none
+        public final String date, time;
+        public final String duration;
+        public final List<String> links;
+        final long offset;
+        final int length;
+
+        public Entry(String id, String name, String status, String type, String date, String time,
+                     String duration, List<String> links, long offset, int length) {
+            this.id = id;
+            this.name = name;
+            this.status = status;
+            this.type = type;
+            this.date = date;
+            this.time = time;
+            this.duration = duration;
+            this.links = links;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private ProjectIndex(File projectFile) {
+        this.projectFile = projectFile;
+        this.indexFile = indexFileFor(projectFile);
+    }
+
+    public static File indexFileFor(File projectFile) {
+        String fileName = projectFile.getName();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return new File(projectFile.getParentFile(), baseName + EXTENSION);
+    }
+
+    /**
+     * Load the index for a project file, or return null if there is none or it is out of date
+     */
+    public static ProjectIndex load(File projectFile) {
+        ProjectIndex index = new ProjectIndex(projectFile);
+        if (!index.indexFile.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index.indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long projectLength = in.readLong();
+            long projectModified = in.readLong();
+            if (projectLength != projectFile.length() || projectModified != projectFile.lastModified()) {
+                return null;
+            }
+            index.journalSeq = in.readLong();
+            index.projectName = in.readUTF();
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF(), name = in.readUTF(), status = in.readUTF(), type = in.readUTF();
+                String date = readOptional(in), time = readOptional(in), duration = in.readUTF();
+                int linkCount = in.readInt();
+                List<String> links = new ArrayList<>(linkCount);
+                for (int j = 0; j < linkCount; j++) {
+                    links.add(in.readUTF());
+                }
+                entries.add(new Entry(id, name, status, type, date, time, duration, links, in.readLong(), in.readInt()));
+            }
+            index.setEntries(entries);
+            return index;
+        } catch (IOException e) {
+            // A damaged index just means the project is opened the slow way
+            return null;
+        }
+    }
+
+    /**
+     * Create an index for a project file that has just been written
+     */
+    static ProjectIndex create(File projectFile, String projectName, long journalSeq, List<Entry> entries) throws IOException {
+        ProjectIndex index = new ProjectIndex(projectFile);
+        index.update(projectName, journalSeq, entries);
+        return index;
+    }
+
+    /**
+     * Point the index at a freshly written project file and save it. Callers replacing the
+     * project file hold this index's lock so readers never see old offsets for a new file.
+     */
+    synchronized void update(String projectName, long journalSeq, List<Entry> entries) throws IOException {
+        this.projectName = projectName;
+        this.journalSeq = journalSeq;
+        setEntries(entries);
+
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(projectFile.length());
+            out.writeLong(projectFile.lastModified());
+            out.writeLong(journalSeq);
+            out.writeUTF(projectName);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.id);
+                out.writeUTF(entry.name);
+                out.writeUTF(entry.status);
+                out.writeUTF(entry.type);
+                out.writeUTF(entry.date != null ? entry.date : "");
+                out.writeUTF(entry.time != null ? entry.time : "");
+                out.writeUTF(entry.duration);
+                out.writeInt(entry.links.size());
+                for (String link : entry.links) {
+                    out.writeUTF(link);
+                }
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+            }
+        }
+        // The index is checked against the project file on load, so it doesn't need a sync
+        DurableFiles.move(temp.toPath(), indexFile.toPath());
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException {
+        String value = in.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Read the JSON object of one conversion straight from the project file
+     */
+    public synchronized String readFragment(String id) throws IOException {
+        Entry entry = entriesById.get(id);
+        if (entry == null) {
+            throw new IOException("Conversion " + id + " is not in the project index");
+        }
+        byte[] bytes = new byte[entry.length];
+        try (RandomAccessFile in = new RandomAccessFile(projectFile, "r")) {
+            in.seek(entry.offset);
+            in.readFully(bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Build a conversion holding only the indexed summary; the rest loads on demand
+     */
+    Conversion createStub(Entry entry) {
+        Conversion conversion = new Conversion(entry.id, entry.name);
+        conversion.type = Type.fromDisplayName(entry.type);
+        conversion.dateOfConversion = ProjectCodec.parseDate(entry.date);
+        conversion.timeOfConversion = ProjectCodec.parseTime(entry.time);
+        conversion.duration = Duration.parse(entry.duration);
+        List<FileReference> links = new ArrayList<>(entry.links.size());
+        for (String link : entry.links) {
+            links.add(new FileReference(link));
+        }
+        conversion.indexedLinks = links;
+        for (ConversionStatus status : ConversionStatus.values()) {
+            if (status.toString().equals(entry.status)) {
+                conversion.status = status;
+                break;
+            }
+        }
+        conversion.setDetailsSource(this);
+        return conversion;
+    }
+
+    public File getProjectFile() {
+        return projectFile;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    private void setEntries(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        Map<String, Entry> byId = new HashMap<>();
+        for (Entry entry : entries) {
+            byId.put(entry.id, entry);
+        }
+        this.entriesById = byId;
+    }
+}
@@ -0,0 +1,400 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only change journal kept next to a project's JSON file.
+ * Each save appends one line per changed conversion instead of rewriting the whole project;
+ * a background compactor periodically folds the journal back into the main file, and the
+ * loader replays it on open so an interrupted session loses nothing that was saved.
+ *
+ * Records are single-line JSON objects with an increasing "seq". The main file stores the
+ * last sequence number it already contains, so replaying after a crash is always safe.
+ */
+public class ProjectJournal {
+
+    public static final String EXTENSION = ".journal";
+
+    // Fold the journal back into the project file once it grows past this size
+    private static final long COMPACT_THRESHOLD_BYTES = 1024 * 1024;
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "project-journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File projectFile;
+    private final File journalFile;
+    private ProjectIndex index;
+
+    // Last state written for each conversion (by id), and the order they were written in
+    private final Map<String, ProjectSnapshot.Item> committed = new HashMap<>();
+    private List<String> committedOrder = new ArrayList<>();
+    private String projectName;
+    private long seq;
+    private long generation;
+    private boolean baseCurrent;
+    private boolean compacting;
+
+    public ProjectJournal(File projectFile, ProjectIndex index) {
+        this.projectFile = projectFile;
+        this.journalFile = journalFileFor(projectFile);
+        this.index = index;
+    }
+
+    public static File journalFileFor(File projectFile) {
+        String fileName = projectFile.getName();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return new File(projectFile.getParentFile(), baseName + EXTENSION);
+    }
+
+    public File getProjectFile() {
+        return projectFile;
+    }
+
+    /**
+     * Replay any journal records newer than the loaded project file, then take the
+     * resulting state as the baseline for the next save.
+     */
+    public synchronized void open(Project project, long journalSeq, boolean missingIds) throws IOException {
+        seq = journalSeq;
+        if (journalFile.exists()) {
+            seq = Math.max(seq, replay(project, journalSeq));
+        }
+        // A file written before conversions had ids can't be referenced by journal records yet,
+        // and one without an index has to be rewritten once to get one
+        baseCurrent = !missingIds && index != null;
+        ProjectSnapshot snapshot = ProjectSnapshot.of(project);
+        baseline(snapshot);
+        snapshot.markWritten();
+    }
+
+    /**
+     * Append a record for every conversion that changed since the last save. Only conversions
+     * that were dirty in the snapshot are compared; clean ones are carried over as committed.
+     * Returns the number of bytes appended.
+     */
+    public synchronized long append(ProjectSnapshot snapshot) throws IOException {
+        if (!baseCurrent) {
+            writeSnapshot(snapshot);
+            return projectFile.length();
+        }
+
+        List<String> records = new ArrayList<>();
+        Map<String, ProjectSnapshot.Item> current = new LinkedHashMap<>();
+        List<ProjectSnapshot.Item> changed = new ArrayList<>();
+        for (ProjectSnapshot.Item item : snapshot.items) {
+            ProjectSnapshot.Item previous = committed.get(item.id);
+            if (previous != null && !item.dirty) {
+                current.put(item.id, previous);
+                continue;
+            }
+            current.put(item.id, item);
+            changed.add(item);
+        }
+
+        List<String> expectedOrder = new ArrayList<>();
+        for (String id : committedOrder) {
+            if (current.containsKey(id)) {
+                expectedOrder.add(id);
+            } else {
+                JsonObject record = newRecord("remove", id);
+                records.add(record.toString());
+            }
+        }
+
+        for (ProjectSnapshot.Item item : changed) {
+            String id = item.id;
+            String fragment = item.fragment();
+            String previous = committed.containsKey(id) ? committed.get(id).fragment() : null;
+            if (previous == null) {
+                JsonObject record = newRecord("add", id);
+                record.add("conversion", ProjectCodec.parseFragment(fragment));
+                records.add(record.toString());
+                expectedOrder.add(id);
+                continue;
+            }
+            if (previous.equals(fragment)) {
+                continue;
+            }
+            JsonObject changes = diff(ProjectCodec.parseFragment(previous), ProjectCodec.parseFragment(fragment));
+            if (changes.size() > 0) {
+                JsonObject record = newRecord("put", id);
+                record.add("fields", changes);
+                records.add(record.toString());
+            }
+        }
+
+        List<String> currentOrder = new ArrayList<>(current.keySet());
+        if (!currentOrder.equals(expectedOrder)) {
+            JsonObject record = newRecord("order", null);
+            JsonArray ids = new JsonArray();
+            currentOrder.forEach(ids::add);
+            record.add("ids", ids);
+            records.add(record.toString());
+        }
+
+        long written = 0;
+        if (!records.isEmpty()) {
+            // All records of a save go out in one write and reach the disk with one sync
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            for (String line : records) {
+                batch.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                batch.writeTo(out);
+                DurableFiles.sync(out);
+            }
+            written = batch.size();
+        }
+
+        snapshot.markWritten();
+        committed.clear();
+        committed.putAll(current);
+        committedOrder = currentOrder;
+        projectName = snapshot.name;
+
+        if (journalFile.length() > COMPACT_THRESHOLD_BYTES) {
+            compactAsync();
+        }
+        return written;
+    }
+
+    /**
+     * Write the whole project to the main file and start a fresh journal
+     */
+    public synchronized void writeSnapshot(ProjectSnapshot snapshot) throws IOException {
+        baseline(snapshot);
+        File temp = tempFile(".tmp");
+        List<ProjectIndex.Entry> entries = writeBase(temp, snapshot.name, seq, snapshot.items);
+        install(temp, snapshot.name, seq, entries);
+        Files.deleteIfExists(journalFile.toPath());
+        generation++;
+        baseCurrent = true;
+        snapshot.markWritten();
+    }
+
+    /**
+     * Fold the journal into the main file on the compactor thread. The snapshot is taken from
+     * the last committed state, so edits made while compacting are never half-written.
+     */
+    public synchronized void compactAsync() {
+        if (compacting) {
+            return;
+        }
+        compacting = true;
+        final String name = projectName;
+        final long snapshotSeq = seq;
+        final long snapshotLength = journalFile.length();
+        final long snapshotGeneration = generation;
+        final List<ProjectSnapshot.Item> snapshot = new ArrayList<>();
+        for (String id : committedOrder) {
+            snapshot.add(committed.get(id));
+        }
+
+        compactor.execute(() -> {
+            try {
+                compact(name, snapshotSeq, snapshotLength, snapshotGeneration, snapshot);
+            } catch (IOException e) {
+                System.err.println("Could not compact project journal: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    private void compact(String name, long snapshotSeq, long snapshotLength, long snapshotGeneration, List<ProjectSnapshot.Item> snapshot) throws IOException {
+        File temp = tempFile(".compact.tmp");
+        List<ProjectIndex.Entry> entries = writeBase(temp, name, snapshotSeq, snapshot);
+
+        synchronized (this) {
+            if (generation != snapshotGeneration) {
+                // A full save replaced the project file in the meantime; it is already newer
+                Files.deleteIfExists(temp.toPath());
+                return;
+            }
+            install(temp, name, snapshotSeq, entries);
+
+            // Keep only the records appended while the snapshot was being written
+            long length = journalFile.length();
+            if (length <= snapshotLength) {
+                Files.deleteIfExists(journalFile.toPath());
+            } else {
+                byte[] tail = new byte[(int) (length - snapshotLength)];
+                try (RandomAccessFile in = new RandomAccessFile(journalFile, "r")) {
+                    in.seek(snapshotLength);
+                    in.readFully(tail);
+                }
+                File tailFile = new File(journalFile.getParentFile(), journalFile.getName() + ".tmp");
+                Files.write(tailFile.toPath(), tail);
+                DurableFiles.replace(tailFile.toPath(), journalFile.toPath());
+            }
+        }
+    }
+
+    private long replay(Project project, long baseSeq) throws IOException {
+        long lastSeq = baseSeq;
+        ArrayList<Conversion> conversions = project.getConversions();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JsonObject record;
+                try {
+                    record = JsonParser.parseString(line).getAsJsonObject();
+                } catch (JsonParseException | IllegalStateException e) {
+                    // A torn final line from an interrupted save; everything before it is intact
+                    break;
+                }
+                long recordSeq = record.get("seq").getAsLong();
+                if (recordSeq <= baseSeq) continue;
+                lastSeq = recordSeq;
+
+                String op = record.get("op").getAsString();
+                String id = record.has("id") ? record.get("id").getAsString() : null;
+                switch (op) {
+                    case "add":
+                        conversions.removeIf(c -> c.id.equals(id));
+                        conversions.add(ProjectCodec.fromJsonObject(record.getAsJsonObject("conversion")));
+                        break;
+                    case "remove":
+                        conversions.removeIf(c -> c.id.equals(id));
+                        break;
+                    case "put":
+                        for (int i = 0; i < conversions.size(); i++) {
+                            if (conversions.get(i).id.equals(id)) {
+                                conversions.get(i).loadDetails();
+                                JsonObject merged = ProjectCodec.toJsonObject(conversions.get(i));
+                                for (Map.Entry<String, JsonElement> field : record.getAsJsonObject("fields").entrySet()) {
+                                    if (field.getValue().isJsonNull()) {
+                                        merged.remove(field.getKey());
+                                    } else {
+                                        merged.add(field.getKey(), field.getValue());
+                                    }
+                                }
+                                conversions.set(i, ProjectCodec.fromJsonObject(merged));
+                                break;
+                            }
+                        }
+                        break;
+                    case "order":
+                        Map<String, Integer> position = new HashMap<>();
+                        JsonArray ids = record.getAsJsonArray("ids");
+                        for (int i = 0; i < ids.size(); i++) {
+                            position.put(ids.get(i).getAsString(), i);
+                        }
+                        conversions.sort(Comparator.comparingInt(c -> position.getOrDefault(c.id, Integer.MAX_VALUE)));
+                        break;
+                    default:
+                        // Unknown operations come from a newer version; skip them
+                        break;
+                }
+            }
+        }
+        return lastSeq;
+    }
+
+    /**
+     * Take the snapshot as the committed state. Conversions that are still summary-only stay
+     * unread until the project file is rewritten.
+     */
+    private void baseline(ProjectSnapshot snapshot) {
+        committed.clear();
+        committedOrder = new ArrayList<>();
+        for (ProjectSnapshot.Item item : snapshot.items) {
+            committed.put(item.id, item);
+            committedOrder.add(item.id);
+        }
+        projectName = snapshot.name;
+    }
+
+    /**
+     * Write a complete project file and collect the index entries describing it
+     */
+    private List<ProjectIndex.Entry> writeBase(File target, String name, long baseSeq, List<ProjectSnapshot.Item> snapshot) throws IOException {
+        List<ProjectIndex.Entry> entries = new ArrayList<>(snapshot.size());
+        ProjectCodec.writeFragments(target, name, baseSeq, new ProjectCodec.FragmentSource() {
+            @Override
+            public int count() {
+                return snapshot.size();
+            }
+
+            @Override
+            public String fragment(int i) throws IOException {
+                return snapshot.get(i).fragment();
+            }
+
+            @Override
+            public void written(int i, long offset, int length) {
+                ProjectSnapshot.Item state = snapshot.get(i);
+                entries.add(new ProjectIndex.Entry(state.id, state.name, state.status, state.type,
+                    state.date, state.time, state.duration, state.links, offset, length));
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Move a freshly written project file into place and repoint the index at it. Summary-only
+     * conversions read through the index, so both change under the index's lock.
+     */
+    private void install(File temp, String name, long baseSeq, List<ProjectIndex.Entry> entries) throws IOException {
+        if (index == null) {
+            DurableFiles.replace(temp.toPath(), projectFile.toPath());
+            index = ProjectIndex.create(projectFile, name, baseSeq, entries);
+            return;
+        }
+        synchronized (index) {
+            DurableFiles.replace(temp.toPath(), projectFile.toPath());
+            index.update(name, baseSeq, entries);
+        }
+    }
+
+    private File tempFile(String suffix) {
+        return new File(projectFile.getParentFile(), projectFile.getName() + suffix);
+    }
+
+    private JsonObject newRecord(String op, String id) {
+        JsonObject record = new JsonObject();
+        record.addProperty("seq", ++seq);
+        record.addProperty("op", op);
+        if (id != null) {
+            record.addProperty("id", id);
+        }
+        return record;
+    }
+
+    /**
+     * Fields whose encoded value differs; removed fields are recorded as null
+     */
+    private static JsonObject diff(JsonObject previous, JsonObject current) {
+        JsonObject changes = new JsonObject();
+        for (Map.Entry<String, JsonElement> field : current.entrySet()) {
+            if (!field.getValue().equals(previous.get(field.getKey()))) {
+                changes.add(field.getKey(), field.getValue());
+            }
+        }
+        for (String key : previous.keySet()) {
+            if (!current.has(key)) {
+                changes.add(key, JsonNull.INSTANCE);
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,159 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import com.thevideogoat.digitizingassistant.util.Metrics;
+
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+/**
+ * Saves a project on a dedicated background thread.
+ *
+ * A save request snapshots the project on the calling (editing) thread and hands the snapshot
+ * to the writer. Requests arriving while a write is still queued replace its snapshot, so a
+ * burst of saves (an autosave plus an export stamping lastExportTime, say) becomes a single
+ * write and a single sync to disk; requests made while a write is running form the next batch.
+ * After edits stop for the autosave delay, the project is saved automatically.
+ */
+public class ProjectSaveService {
+
+    // How long a save request waits for others to merge with it
+    private static final long COALESCE_DELAY_MILLIS = 200;
+
+    /**
+     * Receives autosave prompts and write results.
+     */
+    public interface Listener {
+        /** Called on the edit thread once edits have stopped for the autosave delay; normally calls save() */
+        void autosaveDue();
+
+        /** Called on the writer thread after every write */
+        void saveCompleted(Throwable error);
+    }
+
+    private final Project project;
+    private final Path destination;
+    private final Executor editThread;
+    private final Listener listener;
+    private final ScheduledExecutorService writer;
+
+    private ProjectSnapshot pending;
+    private CompletableFuture<Void> pendingResult;
+    private ScheduledFuture<?> autosave;
+    private final long autosaveDelayMillis;
+
+    // editThread runs work on the thread that edits the project, e.g. SwingUtilities::invokeLater
+    public ProjectSaveService(Project project, Path destination, Executor editThread, Listener listener) {
+        this.project = project;
+        this.destination = destination;
+        this.editThread = editThread;
+        this.listener = listener;
+        this.autosaveDelayMillis = Preferences.getInstance().getAutosaveDelaySeconds() * 1000L;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "project-save-" + project.getName());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Snapshot the project now and write it in the background. Must be called on the edit thread.
+     * The returned future completes once a write including this snapshot has finished.
+     */
+    public CompletableFuture<Void> save() {
+        ProjectSnapshot snapshot;
+        try {
+            snapshot = project.snapshot();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        synchronized (this) {
+            cancelAutosave();
+            if (writer.isShutdown()) {
+                // The project was closed; its last changes were written on shutdown
+                return CompletableFuture.completedFuture(null);
+            }
+            boolean queued = pending != null;
+            pending = snapshot;
+            if (!queued) {
+                pendingResult = new CompletableFuture<>();
+                writer.schedule(this::writePending, COALESCE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return pendingResult;
+        }
+    }
+
+    /**
+     * Save and wait for the write to finish, e.g. before the project is closed
+     */
+    public void saveAndWait() {
+        CompletableFuture<Void> result = save();
+        writer.execute(this::writePending);
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new Error("Failed to save project to file.", e.getCause());
+        }
+    }
+
+    /**
+     * Note that the project was edited; it is saved once edits stop for the autosave delay
+     */
+    public synchronized void changed() {
+        cancelAutosave();
+        if (autosaveDelayMillis > 0 && !writer.isShutdown()) {
+            autosave = writer.schedule(() -> editThread.execute(listener::autosaveDue), autosaveDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Finish any queued write and stop the writer thread
+     */
+    public void shutdown() {
+        synchronized (this) {
+            cancelAutosave();
+        }
+        writer.execute(this::writePending);
+        writer.shutdown();
+    }
+
+    private void writePending() {
+        ProjectSnapshot snapshot;
+        CompletableFuture<Void> result;
+        synchronized (this) {
+            snapshot = pending;
+            result = pendingResult;
+            pending = null;
+            pendingResult = null;
+        }
+        if (snapshot == null) {
+            return;
+        }
+
+        Throwable error = null;
+        long start = System.nanoTime();
+        try {
+            project.writeChanges(snapshot, destination);
+            Metrics.getInstance().recordProjectSave(System.nanoTime() - start);
+        } catch (Throwable t) {
+            error = t;
+            System.err.println("Could not save project: " + t.getMessage());
+        }
+
+        if (error == null) {
+            result.complete(null);
+        } else {
+            result.completeExceptionally(error);
+        }
+        listener.saveCompleted(error);
+    }
+
+    private void cancelAutosave() {
+        if (autosave != null) {
+            autosave.cancel(false);
+            autosave = null;
+        }
+    }
+}
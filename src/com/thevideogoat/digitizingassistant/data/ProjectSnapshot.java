@@ -0,0 +1,109 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point-in-time copy of a project, taken on the thread that edits it so the project can be
+ * written on another thread while editing carries on.
+ *
+ * For JSON projects only changed conversions are encoded when the snapshot is taken; unchanged
+ * ones reuse their cached JSON or, if they were never loaded, stay in the project file.
+ * Binary projects are rewritten whole, so their snapshot holds a copy of every conversion.
+ */
+public final class ProjectSnapshot {
+
+    final String name;
+    final boolean binaryFormat;
+    final List<Item> items;
+
+    /**
+     * One conversion as of the snapshot.
+     */
+    static final class Item {
+        // The live conversion, only used to mark it clean once the write has finished
+        final Conversion conversion;
+        final int revision;
+        final boolean dirty;
+        final String id, name, status, type;
+        // Summary kept in the project index, see ProjectIndex.Entry
+        final String date, time, duration;
+        final List<String> links;
+        // JSON of the conversion, or null while it only lives in the project file (see source)
+        final String fragment;
+        final ProjectIndex source;
+        // Detached copy for binary projects
+        final Conversion copy;
+
+        private Item(Conversion conversion, int revision, boolean dirty, String fragment, ProjectIndex source, Conversion copy) {
+            this.conversion = conversion;
+            this.revision = revision;
+            this.dirty = dirty;
+            this.id = conversion.id;
+            this.name = conversion.name;
+            this.status = conversion.status.toString();
+            this.type = conversion.type.toString();
+            this.date = conversion.dateOfConversion != null ? conversion.dateOfConversion.toString() : null;
+            this.time = conversion.timeOfConversion != null ? conversion.timeOfConversion.toString() : null;
+            this.duration = conversion.duration.toString();
+            List<FileReference> files = conversion.copyLinkedFiles();
+            List<String> links = new ArrayList<>(files.size());
+            for (FileReference file : files) {
+                links.add(file.getPath());
+            }
+            this.links = links;
+            this.fragment = fragment;
+            this.source = source;
+            this.copy = copy;
+        }
+
+        String fragment() throws IOException {
+            return fragment != null ? fragment : source.readFragment(id);
+        }
+    }
+
+    private ProjectSnapshot(String name, boolean binaryFormat, List<Item> items) {
+        this.name = name;
+        this.binaryFormat = binaryFormat;
+        this.items = Collections.unmodifiableList(items);
+    }
+
+    static ProjectSnapshot of(Project project) throws IOException {
+        List<Conversion> conversions = project.getConversions();
+        List<Item> items = new ArrayList<>(conversions.size());
+        for (Conversion conversion : conversions) {
+            // Holding the conversion's lock keeps a background details load from landing halfway
+            synchronized (conversion) {
+                int revision = conversion.getRevision();
+                boolean dirty = conversion.isDirty();
+                if (project.isBinaryFormat()) {
+                    items.add(new Item(conversion, revision, dirty, null, null, conversion.copy()));
+                } else if (!conversion.isDetailsLoaded()) {
+                    items.add(new Item(conversion, revision, dirty, null, conversion.getDetailsSource(), null));
+                } else {
+                    items.add(new Item(conversion, revision, dirty, ProjectCodec.fragmentOf(conversion), null, null));
+                }
+            }
+        }
+        return new ProjectSnapshot(project.getName(), project.isBinaryFormat(), items);
+    }
+
+    List<Conversion> copies() {
+        List<Conversion> copies = new ArrayList<>(items.size());
+        for (Item item : items) {
+            copies.add(item.copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Mark every conversion in the snapshot clean, except those edited again since it was taken
+     */
+    void markWritten() {
+        for (Item item : items) {
+            item.conversion.markClean(item.fragment, item.revision);
+        }
+    }
+}
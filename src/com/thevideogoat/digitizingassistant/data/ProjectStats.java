@@ -0,0 +1,173 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Running totals for a project: conversions per status and per type, and the size of each
+ * conversion's linked files. Every conversion's share is remembered, so a change to one
+ * conversion adjusts the totals without going over the rest, and the disk is only read when
+ * a conversion's links change.
+ *
+ * Updates come from the EDT; sizes are worked out in the background and added in as they arrive.
+ */
+public class ProjectStats {
+
+    /**
+     * Works out the total size of a list of linked files, a copy taken on the caller's thread
+     */
+    public interface Sizer {
+        CompletableFuture<Long> size(List<FileReference> links);
+    }
+
+    private static class Entry {
+        ConversionStatus status;
+        Type type;
+        // Links as of the last sizing, from the project index while only the summary is loaded
+        List<FileReference> links;
+        long size;
+        // Bumped on every resize, so a slow answer can't overwrite a newer one
+        int sizeRevision;
+    }
+
+    private final Sizer sizer;
+    private final Runnable sizeListener;
+    private final Map<Conversion, Entry> entries = new IdentityHashMap<>();
+    private final Map<ConversionStatus, Integer> statusCounts = new EnumMap<>(ConversionStatus.class);
+    private final Map<Type, Integer> typeCounts = new EnumMap<>(Type.class);
+    private long totalSize;
+
+    /**
+     * sizeListener is told, on a background thread, whenever a new size has been added in
+     */
+    public ProjectStats(Sizer sizer, Runnable sizeListener) {
+        this.sizer = sizer;
+        this.sizeListener = sizeListener;
+    }
+
+    /**
+     * Bring one conversion's share up to date
+     */
+    public synchronized void update(Conversion conversion) {
+        Entry entry = entries.get(conversion);
+        boolean added = entry == null;
+        if (added) {
+            entry = new Entry();
+            entries.put(conversion, entry);
+        }
+
+        if (added || entry.status != conversion.status) {
+            if (!added) {
+                count(statusCounts, entry.status, -1);
+            }
+            entry.status = conversion.status;
+            count(statusCounts, entry.status, 1);
+        }
+        if (added || entry.type != conversion.type) {
+            if (!added) {
+                count(typeCounts, entry.type, -1);
+            }
+            entry.type = conversion.type;
+            count(typeCounts, entry.type, 1);
+        }
+
+        // The same paths once a conversion's details load, so loading it doesn't size it again
+        List<FileReference> links = conversion.copyLinkedFiles();
+        if (entry.links == null || !entry.links.equals(links)) {
+            entry.links = links;
+            resize(conversion, entry);
+        }
+    }
+
+    /**
+     * Bring every conversion's share up to date and forget conversions no longer in the list
+     */
+    public synchronized void refresh(List<Conversion> conversions) {
+        Set<Conversion> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Conversion conversion : conversions) {
+            present.add(conversion);
+            update(conversion);
+        }
+        for (Conversion conversion : new ArrayList<>(entries.keySet())) {
+            if (!present.contains(conversion)) {
+                remove(conversion);
+            }
+        }
+    }
+
+    public synchronized void remove(Conversion conversion) {
+        Entry entry = entries.remove(conversion);
+        if (entry == null) {
+            return;
+        }
+        count(statusCounts, entry.status, -1);
+        count(typeCounts, entry.type, -1);
+        totalSize -= entry.size;
+    }
+
+    /**
+     * Size again every conversion linking one of the given paths, e.g. after they changed on disk
+     */
+    public synchronized void resize(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        Set<String> changed = paths instanceof Set ? (Set<String>) paths : new HashSet<>(paths);
+        for (Map.Entry<Conversion, Entry> e : entries.entrySet()) {
+            for (FileReference link : e.getValue().links) {
+                if (changed.contains(link.getPath())) {
+                    resize(e.getKey(), e.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    public synchronized int getConversionCount() {
+        return entries.size();
+    }
+
+    public synchronized int getCount(ConversionStatus status) {
+        return statusCounts.getOrDefault(status, 0);
+    }
+
+    public synchronized int getCount(Type type) {
+        return typeCounts.getOrDefault(type, 0);
+    }
+
+    /**
+     * Size of all linked files, counting conversions still being sized as they were last measured
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    public synchronized long getSize(Conversion conversion) {
+        Entry entry = entries.get(conversion);
+        return entry != null ? entry.size : 0;
+    }
+
+    private static <K> void count(Map<K, Integer> counts, K key, int delta) {
+        if (key != null) {
+            counts.merge(key, delta, Integer::sum);
+        }
+    }
+
+    private void resize(Conversion conversion, Entry entry) {
+        int revision = ++entry.sizeRevision;
+        sizer.size(entry.links).whenComplete((size, error) -> {
+            if (error != null) {
+                System.err.println("Could not size files of " + conversion.name + ": " + error.getMessage());
+                return;
+            }
+            synchronized (this) {
+                if (entries.get(conversion) != entry || entry.sizeRevision != revision) {
+                    return;
+                }
+                totalSize += size - entry.size;
+                entry.size = size;
+            }
+            sizeListener.run();
+        });
+    }
+}
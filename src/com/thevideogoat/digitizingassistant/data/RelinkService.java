@@ -1,12 +1,18 @@
 package com.thevideogoat.digitizingassistant.data;
 
+import com.thevideogoat.digitizingassistant.util.FilenameIndex;
+import com.thevideogoat.digitizingassistant.util.FuzzyNameIndex;
+import com.thevideogoat.digitizingassistant.util.ParallelWalker;
+
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
-import java.util.function.Predicate;
-import java.util.function.ToIntFunction;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Unified service for handling all relink operations in the application.
@@ -14,6 +20,9 @@ import java.util.function.ToIntFunction;
  */
 public class RelinkService {
     
+    // rank() of a file that doesn't match the conversion
+    private static final int NO_MATCH = 4;
+    
     public enum RelinkMode {
         INTERACTIVE,    // Show dialog with options
         QUICK,         // Use saved settings without dialog
@@ -65,8 +74,10 @@ public class RelinkService {
         // Perform the relink based on scope
         switch (scope) {
             case SINGLE_CONVERSION:
+                targetConversion.loadDetails();
                 return relinkSingleConversion(targetConversion, searchDirectory, criteria, mode, parent);
             case ALL_CONVERSIONS:
+                project.loadAllDetails();
                 return relinkAllConversions(project, searchDirectory, criteria, mode, parent);
             case SELECTED_FILES:
                 // This would be implemented for specific file selection scenarios
@@ -81,6 +92,7 @@ public class RelinkService {
      */
     public static RelinkResult performTrimmedRelink(Project project, Component parent) {
         Preferences prefs = Preferences.getInstance();
+        project.loadAllDetails();
         
         // Get directory
         File searchDirectory = selectDirectory(parent);
@@ -157,6 +169,7 @@ public class RelinkService {
 
             // Update the conversion's linked files
             conversion.linkedFiles = updatedFiles;
+            conversion.markDirty();
         }
         
         // Build result message
@@ -180,16 +193,24 @@ public class RelinkService {
      */
     public static RelinkResult performRelinkByNote(Project project, java.util.List<FileReference> availableFiles) {
         int relinked = 0;
+        project.loadAllDetails();
+        
+        // Normalize every file name once rather than once per conversion
+        String[] fileNorms = new String[availableFiles.size()];
+        for (int i = 0; i < fileNorms.length; i++) {
+            fileNorms[i] = normalizeFilename(availableFiles.get(i).getName());
+        }
         
         for (Conversion c : project.getConversions()) {
             String noteNorm = normalizeFilename(c.note);
             if (noteNorm.isEmpty()) continue;
             
-            for (FileReference fileRef : availableFiles) {
-                String fileNorm = normalizeFilename(fileRef.getName());
-                if (fileNorm.contains(noteNorm)) {
+            for (int i = 0; i < fileNorms.length; i++) {
+                FileReference fileRef = availableFiles.get(i);
+                if (fileNorms[i].contains(noteNorm)) {
                     c.linkedFiles.clear();
                     c.linkedFiles.add(fileRef);
+                    c.markDirty();
                     relinked++;
                     break;
                 }
@@ -207,11 +228,7 @@ public class RelinkService {
         if (name == null || name.trim().isEmpty()) {
             return "";
         }
-        // Remove extension
-        int dot = name.lastIndexOf('.');
-        if (dot != -1) name = name.substring(0, dot);
-        // Remove spaces, parentheses, dashes, underscores, and non-alphanumeric
-        return name.replaceAll("[\\s\\(\\)\\-_.]", "").replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
+        return TrimmedMatcher.normalizeFilename(name);
     }
     
     /**
@@ -219,6 +236,7 @@ public class RelinkService {
      */
     public static RelinkResult performSmartBulkRelink(Project project, Component parent) {
         Preferences prefs = Preferences.getInstance();
+        project.loadAllDetails();
         
         // Get directory
         File searchDirectory = selectDirectory(parent);
@@ -227,13 +245,157 @@ public class RelinkService {
         }
         prefs.setLastUsedDirectory(searchDirectory.getAbsolutePath());
         
-        // Use all matching criteria for best results
-        RelinkCriteria criteria = new RelinkCriteria(true, true, true);
+        // Use all exact matching criteria for best results; near misses only if the user opted in
+        RelinkCriteria criteria = new RelinkCriteria(true, true, true, prefs.isRelinkByFuzzy());
         
         // Show progress dialog for bulk operation
         return relinkAllConversionsWithProgress(project, searchDirectory, criteria, parent);
     }
     
+    /**
+     * Find linked files that were renamed or moved outside the app by their fingerprints (see
+     * {@link FileFingerprint}). The search directory is walked once, keeping only files the size
+     * of a missing one; only those are read, and a missing file is relinked if exactly one of
+     * them has its fingerprint.
+     */
+    public static RelinkResult performFingerprintRelink(Project project, Component parent) {
+        project.loadAllDetails();
+        
+        // Missing files with a fingerprint, by size, and the conversions linking them
+        Map<Long, List<FileReference>> lostBySize = new HashMap<>();
+        Map<FileReference, List<Conversion>> owners = new LinkedHashMap<>();
+        int unfingerprinted = 0;
+        for (Conversion conversion : project.getConversions()) {
+            for (FileReference fileRef : conversion.linkedFiles) {
+                fileRef.invalidateCache();
+                if (fileRef.presence() != FileReference.Presence.MISSING) {
+                    continue;
+                }
+                if (fileRef.getFingerprint() == null) {
+                    unfingerprinted++;
+                    continue;
+                }
+                if (!owners.containsKey(fileRef)) {
+                    lostBySize.computeIfAbsent(fileRef.getFingerprint().size, k -> new ArrayList<>()).add(fileRef);
+                }
+                owners.computeIfAbsent(fileRef, k -> new ArrayList<>()).add(conversion);
+            }
+        }
+        if (owners.isEmpty()) {
+            String message = unfingerprinted > 0
+                ? String.format("None of the %d missing files has a fingerprint to search by. Use Record File Fingerprints while files are still in place.", unfingerprinted)
+                : "No linked files are missing";
+            return new RelinkResult(false, message, 0);
+        }
+        
+        File searchDirectory = selectDirectory(parent);
+        if (searchDirectory == null) {
+            return new RelinkResult(false, "No directory selected", 0);
+        }
+        Preferences.getInstance().setLastUsedDirectory(searchDirectory.getAbsolutePath());
+        
+        int lostCount = owners.size();
+        int withoutFingerprint = unfingerprinted;
+        return runWithProgress("Fingerprint Relink", "Looking for " + lostCount + " missing files...", "Scanning " + searchDirectory.getName() + "...", parent, status -> {
+            // Files the size of a missing one; the walk already has every file's size, so this costs no reads
+            Map<Long, List<File>> candidatesBySize = new HashMap<>();
+            AtomicInteger scanned = new AtomicInteger();
+            ParallelWalker.walkAsync(searchDirectory.toPath(), (path, attributes) -> {
+                if (lostBySize.containsKey(attributes.size())) {
+                    synchronized (candidatesBySize) {
+                        candidatesBySize.computeIfAbsent(attributes.size(), k -> new ArrayList<>()).add(path.toFile());
+                    }
+                }
+                int count = scanned.incrementAndGet();
+                if (count % 500 == 0) status.accept(String.format("Scanned %d files...", count));
+            }).join();
+            
+            int candidateCount = candidatesBySize.values().stream().mapToInt(List::size).sum();
+            int read = 0;
+            int relinked = 0;
+            int ambiguous = 0;
+            for (Map.Entry<Long, List<File>> bucket : candidatesBySize.entrySet()) {
+                List<File> candidates = bucket.getValue();
+                candidates.sort(Comparator.comparing(File::getPath));
+                Map<FileFingerprint, List<File>> byFingerprint = new HashMap<>();
+                for (File candidate : candidates) {
+                    status.accept(String.format("Comparing %d of %d same-size files...", ++read, candidateCount));
+                    try {
+                        byFingerprint.computeIfAbsent(FileFingerprint.of(candidate.toPath()), k -> new ArrayList<>(1)).add(candidate);
+                    } catch (IOException e) {
+                        System.err.println("Could not fingerprint " + candidate + ": " + e.getMessage());
+                    }
+                }
+                for (FileReference lost : lostBySize.get(bucket.getKey())) {
+                    List<File> found = byFingerprint.getOrDefault(lost.getFingerprint(), Collections.emptyList());
+                    if (found.size() > 1) {
+                        ambiguous++;
+                    } else if (found.size() == 1) {
+                        for (Conversion conversion : owners.get(lost)) {
+                            int index = conversion.linkedFiles.indexOf(lost);
+                            if (index != -1) {
+                                conversion.linkedFiles.set(index, lost.movedTo(found.get(0)));
+                                conversion.markDirty();
+                            }
+                        }
+                        relinked++;
+                    }
+                }
+            }
+            
+            String message = String.format("Fingerprint relink completed. Found %d of %d missing files.", relinked, lostCount);
+            if (ambiguous > 0) {
+                message += String.format(" %d matched more than one file and were left alone.", ambiguous);
+            }
+            if (withoutFingerprint > 0) {
+                message += String.format(" %d missing files had no fingerprint to search by.", withoutFingerprint);
+            }
+            return new RelinkResult(true, message, relinked);
+        });
+    }
+    
+    /**
+     * Record fingerprints for the linked files that are in place and have none, or whose size
+     * changed, so {@link #performFingerprintRelink} can find them if they are moved later.
+     * This reads up to two megabytes of each such file, so it only runs when asked for.
+     */
+    public static RelinkResult recordFingerprints(Project project, Component parent) {
+        project.loadAllDetails();
+        
+        // Copies of each conversion's links, taken here; only the copies are read in the background
+        Map<Conversion, List<FileReference>> linked = new LinkedHashMap<>();
+        int total = 0;
+        for (Conversion conversion : project.getConversions()) {
+            linked.put(conversion, new ArrayList<>(conversion.linkedFiles));
+            total += conversion.linkedFiles.size();
+        }
+        if (total == 0) {
+            return new RelinkResult(false, "No linked files to fingerprint", 0);
+        }
+        
+        int fileCount = total;
+        return runWithProgress("Record Fingerprints", "Fingerprinting " + fileCount + " linked files...", "Checking files...", parent, status -> {
+            int checked = 0;
+            int recorded = 0;
+            List<Conversion> changed = new ArrayList<>();
+            for (Map.Entry<Conversion, List<FileReference>> entry : linked.entrySet()) {
+                boolean updated = false;
+                for (FileReference fileRef : entry.getValue()) {
+                    status.accept(String.format("Checking %d of %d files...", ++checked, fileCount));
+                    if (fileRef.updateFingerprint()) {
+                        updated = true;
+                        recorded++;
+                    }
+                }
+                if (updated) {
+                    changed.add(entry.getKey());
+                }
+            }
+            SwingUtilities.invokeLater(() -> changed.forEach(Conversion::markDirty));
+            return new RelinkResult(true, String.format("Recorded fingerprints for %d of %d linked files.", recorded, fileCount), recorded);
+        });
+    }
+    
     private static File selectDirectory(Component parent) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
@@ -252,45 +414,46 @@ public class RelinkService {
         JCheckBox byNote = new JCheckBox("Match conversion note", prefs.isRelinkByNote());
         JCheckBox byTitle = new JCheckBox("Match conversion title", prefs.isRelinkByTitle());
         JCheckBox byTrimmed = new JCheckBox("Match trimmed filenames (_trimmed)", prefs.isRelinkByTrimmed());
+        JCheckBox byFuzzy = new JCheckBox("Also match near misses of note/title (typos, suffixes like \"(1)\")", prefs.isRelinkByFuzzy());
         
         JPanel opts = new JPanel(new GridLayout(0, 1));
         opts.add(byNote);
         opts.add(byTitle);
         opts.add(byTrimmed);
+        opts.add(byFuzzy);
         
         int result = JOptionPane.showConfirmDialog(parent, opts, "Relink Search Options", JOptionPane.OK_CANCEL_OPTION);
         if (result != JOptionPane.OK_OPTION) {
             return null;
         }
         
-        return new RelinkCriteria(byNote.isSelected(), byTitle.isSelected(), byTrimmed.isSelected());
+        return new RelinkCriteria(byNote.isSelected(), byTitle.isSelected(), byTrimmed.isSelected(), byFuzzy.isSelected());
     }
     
     private static RelinkCriteria loadSavedCriteria(Preferences prefs) {
-        return new RelinkCriteria(prefs.isRelinkByNote(), prefs.isRelinkByTitle(), prefs.isRelinkByTrimmed());
+        return new RelinkCriteria(prefs.isRelinkByNote(), prefs.isRelinkByTitle(), prefs.isRelinkByTrimmed(), prefs.isRelinkByFuzzy());
     }
     
     private static void saveCriteria(RelinkCriteria criteria, Preferences prefs) {
         prefs.setRelinkByNote(criteria.byNote);
         prefs.setRelinkByTitle(criteria.byTitle);
         prefs.setRelinkByTrimmed(criteria.byTrimmed);
+        prefs.setRelinkByFuzzy(criteria.byFuzzy);
     }
     
     private static RelinkResult relinkSingleConversion(Conversion conversion, File searchDirectory, RelinkCriteria criteria, RelinkMode mode, Component parent) {
-        List<File> matches = findMatchingFiles(conversion, searchDirectory, criteria);
-        
-        if (matches.isEmpty()) {
-            String message = "No matching files found" + (mode == RelinkMode.QUICK ? " using saved settings" : "");
-            return new RelinkResult(false, message, 0);
-        }
-        
         File selectedFile;
         if (mode == RelinkMode.QUICK || mode == RelinkMode.BULK_SMART) {
+            List<File> matches = findMatchingFiles(conversion, FilenameIndex.forRoot(searchDirectory), criteria);
+            if (matches.isEmpty()) {
+                String message = "No matching files found" + (mode == RelinkMode.QUICK ? " using saved settings" : "");
+                return new RelinkResult(false, message, 0);
+            }
             // Auto-select the best match
             selectedFile = matches.get(0);
         } else {
-            // Let user choose from matches
-            selectedFile = showFileSelectionDialog(matches, parent);
+            // Let user choose from matches as they are found
+            selectedFile = showFileSelectionDialog(conversion, searchDirectory, criteria, parent);
             if (selectedFile == null) {
                 return new RelinkResult(false, "No file selected", 0);
             }
@@ -300,6 +463,7 @@ public class RelinkService {
         if (conversion.linkedFiles == null) conversion.linkedFiles = new ArrayList<>();
         conversion.linkedFiles.clear();
         conversion.linkedFiles.add(new FileReference(selectedFile.getAbsolutePath()));
+        conversion.markDirty();
         
         String message = mode == RelinkMode.QUICK ? 
             "Quick relink completed. Linked to: " + selectedFile.getName() :
@@ -309,71 +473,75 @@ public class RelinkService {
     }
     
     private static RelinkResult relinkAllConversions(Project project, File searchDirectory, RelinkCriteria criteria, RelinkMode mode, Component parent) {
-        int successCount = 0;
-        int totalConversions = project.getConversions().size();
-        
-        for (Conversion conversion : project.getConversions()) {
-            List<File> matches = findMatchingFiles(conversion, searchDirectory, criteria);
-            if (!matches.isEmpty()) {
-                // Auto-select best match for bulk operations
-                File bestMatch = matches.get(0);
-                if (conversion.linkedFiles == null) conversion.linkedFiles = new ArrayList<>();
-                conversion.linkedFiles.clear();
-                conversion.linkedFiles.add(new FileReference(bestMatch.getAbsolutePath()));
-                successCount++;
-            }
-        }
-        
-        String message = String.format("Bulk relink completed. Successfully relinked %d of %d conversions.", successCount, totalConversions);
-        return new RelinkResult(true, message, successCount);
+        // Walking the search directory can take minutes, so it never runs on the EDT
+        return runWithProgress("Relink", "Relinking conversions...", "Scanning " + searchDirectory.getName() + "...", parent, status -> {
+            int totalConversions = project.getConversions().size();
+            int successCount = linkBestMatches(findMatchingFiles(project.getConversions(), indexWithProgress(searchDirectory, status), criteria));
+            
+            String message = String.format("Bulk relink completed. Successfully relinked %d of %d conversions.", successCount, totalConversions);
+            return new RelinkResult(true, message, successCount);
+        });
     }
     
     private static RelinkResult relinkAllConversionsWithProgress(Project project, File searchDirectory, RelinkCriteria criteria, Component parent) {
+        return runWithProgress("Smart Bulk Relink", "Processing conversions...", "Scanning " + searchDirectory.getName() + "...", parent, status -> {
+            FilenameIndex index = indexWithProgress(searchDirectory, status);
+            
+            status.accept(String.format("Matching %d files to %d conversions...", index.size(), project.getConversions().size()));
+            int successCount = linkBestMatches(findMatchingFiles(project.getConversions(), index, criteria));
+            
+            return new RelinkResult(true, 
+                String.format("Smart bulk relink completed. Successfully relinked %d of %d conversions.", 
+                successCount, project.getConversions().size()), successCount);
+        });
+    }
+    
+    /**
+     * One pass over the search directory, shared with any earlier relink of it, counting files as they are found
+     */
+    private static FilenameIndex indexWithProgress(File searchDirectory, Consumer<String> status) {
+        AtomicInteger indexed = new AtomicInteger();
+        return FilenameIndex.forRootAsync(searchDirectory, f -> {
+            int count = indexed.incrementAndGet();
+            if (count % 500 == 0) status.accept(String.format("Scanned %d files...", count));
+        }).join();
+    }
+    
+    /**
+     * Work run behind a progress dialog, reporting what it is doing through status
+     */
+    private interface ProgressTask {
+        RelinkResult run(Consumer<String> status) throws Exception;
+    }
+    
+    /**
+     * Run a task in the background while a modal progress dialog shows its latest status
+     */
+    private static RelinkResult runWithProgress(String title, String heading, String initialStatus, Component parent, ProgressTask task) {
         // Create progress dialog
-        JProgressBar progressBar = new JProgressBar(0, project.getConversions().size());
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
         progressBar.setStringPainted(true);
+        progressBar.setString(initialStatus);
         
-        JDialog progressDialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(parent), "Smart Bulk Relink", true);
+        JDialog progressDialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(parent), title, true);
         progressDialog.setLayout(new BorderLayout());
-        progressDialog.add(new JLabel("Processing conversions..."), BorderLayout.NORTH);
+        progressDialog.add(new JLabel(heading), BorderLayout.NORTH);
         progressDialog.add(progressBar, BorderLayout.CENTER);
         progressDialog.setSize(400, 100);
         progressDialog.setLocationRelativeTo(parent);
         
         // Use SwingWorker for background processing
-        SwingWorker<RelinkResult, Integer> worker = new SwingWorker<RelinkResult, Integer>() {
+        SwingWorker<RelinkResult, String> worker = new SwingWorker<RelinkResult, String>() {
             @Override
             protected RelinkResult doInBackground() throws Exception {
-                int successCount = 0;
-                int processed = 0;
-                
-                for (Conversion conversion : project.getConversions()) {
-                    List<File> matches = findMatchingFiles(conversion, searchDirectory, criteria);
-                    if (!matches.isEmpty()) {
-                        File bestMatch = matches.get(0);
-                        if (conversion.linkedFiles == null) conversion.linkedFiles = new ArrayList<>();
-                        conversion.linkedFiles.clear();
-                        conversion.linkedFiles.add(new FileReference(bestMatch.getAbsolutePath()));
-                        successCount++;
-                    }
-                    processed++;
-                    publish(processed);
-                    
-                    // Small delay to show progress
-                    Thread.sleep(50);
-                }
-                
-                return new RelinkResult(true, 
-                    String.format("Smart bulk relink completed. Successfully relinked %d of %d conversions.", 
-                    successCount, project.getConversions().size()), successCount);
+                return task.run(message -> publish(message));
             }
             
             @Override
-            protected void process(List<Integer> chunks) {
+            protected void process(List<String> chunks) {
                 if (!chunks.isEmpty()) {
-                    progressBar.setValue(chunks.get(chunks.size() - 1));
-                    progressBar.setString(String.format("Processing %d of %d...", 
-                        chunks.get(chunks.size() - 1), project.getConversions().size()));
+                    progressBar.setString(chunks.get(chunks.size() - 1));
                 }
             }
             
@@ -389,109 +557,243 @@ public class RelinkService {
         try {
             return worker.get();
         } catch (Exception e) {
-            return new RelinkResult(false, "Error during bulk relink: " + e.getMessage(), 0);
+            return new RelinkResult(false, "Error during " + title.toLowerCase() + ": " + e.getMessage(), 0);
         }
     }
     
-    private static List<File> findMatchingFiles(Conversion conversion, File searchDirectory, RelinkCriteria criteria) {
-        List<File> matches = new ArrayList<>();
-        
-        Predicate<File> predicate = f -> {
-            if (f.isDirectory()) return false;
-            String lowerName = f.getName().toLowerCase();
-            if (lowerName.endsWith(".llc")) return false; // ignore LosslessCut project files
-
-            boolean matched = false;
-
-            // Exact match on note (base name equals conversion note), any extension
+    /**
+     * Link every conversion that has a match to its best one. Returns how many were relinked.
+     */
+    private static int linkBestMatches(Map<Conversion, List<File>> matches) {
+        int successCount = 0;
+        for (Map.Entry<Conversion, List<File>> entry : matches.entrySet()) {
+            // Auto-select best match for bulk operations
+            Conversion conversion = entry.getKey();
+            File bestMatch = entry.getValue().get(0);
+            if (conversion.linkedFiles == null) conversion.linkedFiles = new ArrayList<>();
+            conversion.linkedFiles.clear();
+            conversion.linkedFiles.add(new FileReference(bestMatch.getAbsolutePath()));
+            conversion.markDirty();
+            successCount++;
+        }
+        return successCount;
+    }
+    
+    /**
+     * Matches for many conversions in one pass over the index. Notes and titles are keyed once,
+     * then each file is looked up by its own name and handed to every conversion it matches.
+     * Conversions without a match are left out of the result.
+     */
+    private static Map<Conversion, List<File>> findMatchingFiles(List<Conversion> conversions, FilenameIndex index, RelinkCriteria criteria) {
+        Map<String, List<Conversion>> byNote = new HashMap<>();
+        Map<String, List<Conversion>> byTitle = new HashMap<>();
+        for (Conversion conversion : conversions) {
             if (criteria.byNote && conversion.note != null && !conversion.note.isBlank()) {
-                String base = lowerName;
-                int dot = base.lastIndexOf('.');
-                if (dot > 0) base = base.substring(0, dot);
-                matched |= base.equals(conversion.note.toLowerCase());
+                byNote.computeIfAbsent(conversion.note.toLowerCase(), k -> new ArrayList<>(1)).add(conversion);
             }
-
+            if ((criteria.byTitle || criteria.byTrimmed) && conversion.name != null) {
+                byTitle.computeIfAbsent(conversion.name.toLowerCase(), k -> new ArrayList<>(1)).add(conversion);
+            }
+        }
+        
+        Map<Conversion, List<File>> matches = new IdentityHashMap<>();
+        for (File f : index.getFiles()) {
+            String lowerName = f.getName().toLowerCase();
+            if (lowerName.endsWith(".llc")) continue; // ignore LosslessCut project files
+            String base = FilenameIndex.baseName(lowerName);
+            
+            // Exact match on note, any extension
+            route(f, byNote.get(base), matches);
             // Exact match on title with .mp4 extension
-            if (!matched && criteria.byTitle) {
-                String base = lowerName;
-                int dot = base.lastIndexOf('.');
-                String ext = "";
-                if (dot > 0) {
-                    ext = base.substring(dot);
-                    base = base.substring(0, dot);
-                }
-                matched |= base.equals(conversion.name.toLowerCase()) && ext.equals(".mp4");
+            if (criteria.byTitle && FilenameIndex.extension(lowerName).equals(".mp4")) {
+                route(f, byTitle.get(base), matches);
             }
-
-            // Trimmed match: title_... with "trimmed" somewhere
-            if (!matched && criteria.byTrimmed) {
-                String baseTitle = conversion.name.toLowerCase();
-                matched |= lowerName.startsWith(baseTitle + "_") && lowerName.contains("trimmed");
+            // Trimmed match: title_... with "trimmed" somewhere, for every title the name could start with
+            if (criteria.byTrimmed && lowerName.contains("trimmed")) {
+                for (int i = lowerName.indexOf('_'); i >= 0; i = lowerName.indexOf('_', i + 1)) {
+                    route(f, byTitle.get(lowerName.substring(0, i)), matches);
+                }
             }
-            return matched;
-        };
-
-        Deque<File> stack = new ArrayDeque<>();
-        stack.push(searchDirectory);
-        while (!stack.isEmpty()) {
-            File dir = stack.pop();
-            File[] list = dir.listFiles();
-            if (list == null) continue;
-            for (File f : list) {
-                if (f.isDirectory()) {
-                    stack.push(f);
-                    continue;
+        }
+        
+        // Near misses can't be keyed by name; each is a lookup in the trigram index
+        if (criteria.byFuzzy) {
+            for (Conversion conversion : conversions) {
+                for (File f : similarFiles(conversion, index, criteria)) {
+                    route(f, Collections.singletonList(conversion), matches);
                 }
-                if (predicate.test(f)) matches.add(f);
             }
         }
+        
+        for (Map.Entry<Conversion, List<File>> entry : matches.entrySet()) {
+            entry.getValue().removeIf(f -> rank(entry.getKey(), criteria, f) == NO_MATCH);
+            entry.getValue().sort(matchOrder(entry.getKey(), criteria));
+        }
+        matches.values().removeIf(List::isEmpty);
+        return matches;
+    }
+    
+    private static void route(File f, List<Conversion> conversions, Map<Conversion, List<File>> matches) {
+        if (conversions == null) return;
+        for (Conversion conversion : conversions) {
+            List<File> files = matches.computeIfAbsent(conversion, k -> new ArrayList<>(1));
+            if (!files.contains(f)) files.add(f);
+        }
+    }
+    
+    private static List<File> findMatchingFiles(Conversion conversion, FilenameIndex index, RelinkCriteria criteria) {
+        Set<File> found = new LinkedHashSet<>();
 
-        // Prioritize results: 1) note exact, 2) trimmed, 3) title exact mp4
-        ToIntFunction<File> rank = f -> {
-            String lowerName = f.getName().toLowerCase();
-            String base = lowerName;
-            int dot = base.lastIndexOf('.');
-            String ext = "";
-            if (dot > 0) {
-                ext = base.substring(dot);
-                base = base.substring(0, dot);
-            }
+        // Exact match on note (base name equals conversion note), any extension
+        if (criteria.byNote && conversion.note != null && !conversion.note.isBlank()) {
+            found.addAll(index.withBaseName(conversion.note.toLowerCase()));
+        }
 
-            // note exact
-            if (criteria.byNote && conversion.note != null && !conversion.note.isBlank()) {
-                if (base.equals(conversion.note.toLowerCase())) return 0;
-            }
-            // trimmed
-            if (criteria.byTrimmed) {
-                String baseTitle = conversion.name.toLowerCase();
-                if (lowerName.startsWith(baseTitle + "_") && lowerName.contains("trimmed")) return 1;
+        // Exact match on title with .mp4 extension
+        if (criteria.byTitle) {
+            for (File f : index.withBaseName(conversion.name.toLowerCase())) {
+                if (FilenameIndex.extension(f.getName().toLowerCase()).equals(".mp4")) found.add(f);
             }
-            // title exact mp4
-            if (criteria.byTitle) {
-                if (base.equals(conversion.name.toLowerCase()) && ext.equals(".mp4")) return 2;
-            }
-            return 3;
-        };
-        matches.sort(Comparator.comparingInt(rank).thenComparing(File::getName));
+        }
+
+        // Trimmed match: title_... with "trimmed" somewhere
+        if (criteria.byTrimmed) {
+            found.addAll(index.trimmedWithPrefix(conversion.name.toLowerCase()));
+        }
+
+        // Near misses: typos, extra suffixes
+        found.addAll(similarFiles(conversion, index, criteria));
+
+        List<File> matches = new ArrayList<>();
+        for (File f : found) {
+            if (rank(conversion, criteria, f) != NO_MATCH) matches.add(f);
+        }
+
+        matches.sort(matchOrder(conversion, criteria));
 
         return matches;
     }
+
+    private static List<File> similarFiles(Conversion conversion, FilenameIndex index, RelinkCriteria criteria) {
+        if (!criteria.byFuzzy) return Collections.emptyList();
+        List<File> similar = new ArrayList<>();
+        if (criteria.byNote && conversion.note != null && !conversion.note.isBlank()) {
+            similar.addAll(index.similarTo(conversion.note));
+        }
+        if (criteria.byTitle && conversion.name != null) {
+            similar.addAll(index.similarTo(conversion.name));
+        }
+        return similar;
+    }
+
+    /**
+     * Prioritize results: 1) note exact, 2) trimmed, 3) title exact mp4, 4) fuzzy, most similar
+     * first, then by name
+     */
+    private static Comparator<File> matchOrder(Conversion conversion, RelinkCriteria criteria) {
+        return Comparator.comparingInt((File f) -> rank(conversion, criteria, f))
+            .thenComparingDouble(f -> -similarity(conversion, criteria, f))
+            .thenComparing(File::getName);
+    }
+
+    /**
+     * How well a file matches the conversion, 0 being best; NO_MATCH if it doesn't match at all
+     */
+    private static int rank(Conversion conversion, RelinkCriteria criteria, File f) {
+        String lowerName = f.getName().toLowerCase();
+        if (lowerName.endsWith(".llc")) return NO_MATCH; // ignore LosslessCut project files
+        String base = FilenameIndex.baseName(lowerName);
+        String ext = FilenameIndex.extension(lowerName);
+
+        // note exact
+        if (criteria.byNote && conversion.note != null && !conversion.note.isBlank()) {
+            if (base.equals(conversion.note.toLowerCase())) return 0;
+        }
+        // trimmed
+        if (criteria.byTrimmed) {
+            String baseTitle = conversion.name.toLowerCase();
+            if (lowerName.startsWith(baseTitle + "_") && lowerName.contains("trimmed")) return 1;
+        }
+        // title exact mp4
+        if (criteria.byTitle) {
+            if (base.equals(conversion.name.toLowerCase()) && ext.equals(".mp4")) return 2;
+        }
+        // fuzzy note or title
+        if (similarity(conversion, criteria, f) > 0) return 3;
+        return NO_MATCH;
+    }
+
+    /**
+     * How close the file name is to the note or title, 0 unless fuzzy matching is on and it
+     * is close enough to count
+     */
+    private static double similarity(Conversion conversion, RelinkCriteria criteria, File f) {
+        if (!criteria.byFuzzy) return 0;
+        double best = 0;
+        if (criteria.byNote && conversion.note != null && !conversion.note.isBlank()) {
+            best = FuzzyNameIndex.similarity(conversion.note, f.getName());
+        }
+        if (criteria.byTitle && conversion.name != null) {
+            best = Math.max(best, FuzzyNameIndex.similarity(conversion.name, f.getName()));
+        }
+        return best >= FuzzyNameIndex.MIN_SIMILARITY ? best : 0;
+    }
     
-    private static File showFileSelectionDialog(List<File> matches, Component parent) {
-        JList<File> list = new JList<>(matches.toArray(new File[0]));
+    /**
+     * Let the user pick a match while the search directory is still being indexed. Matches are
+     * added to the list, in rank order, as the scan finds them, so an early hit can be confirmed
+     * without waiting for the rest of the drive.
+     */
+    private static File showFileSelectionDialog(Conversion conversion, File searchDirectory, RelinkCriteria criteria, Component parent) {
+        Comparator<File> order = matchOrder(conversion, criteria);
+        DefaultListModel<File> model = new DefaultListModel<>();
+        JList<File> list = new JList<>(model);
         list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        list.setSelectedIndex(0); // Pre-select the best match
         
         JScrollPane scrollPane = new JScrollPane(list);
         scrollPane.setPreferredSize(new Dimension(600, 300));
         
-        int result = JOptionPane.showConfirmDialog(parent, scrollPane, "Select file to link", JOptionPane.OK_CANCEL_OPTION);
+        JLabel status = new JLabel("Scanning " + searchDirectory.getAbsolutePath() + "...");
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        panel.add(status, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        
+        CompletableFuture<FilenameIndex> index = FilenameIndex.forRootAsync(searchDirectory, f -> {
+            if (rank(conversion, criteria, f) != NO_MATCH) {
+                SwingUtilities.invokeLater(() -> insertMatch(model, list, f, order));
+            }
+        });
+        index.thenAccept(complete -> {
+            List<File> matches = findMatchingFiles(conversion, complete, criteria);
+            SwingUtilities.invokeLater(() -> {
+                File selected = list.getSelectedValue();
+                model.clear();
+                matches.forEach(model::addElement);
+                if (selected != null && matches.contains(selected)) {
+                    list.setSelectedValue(selected, true);
+                } else if (!matches.isEmpty()) {
+                    list.setSelectedIndex(0); // Pre-select the best match
+                }
+                status.setText(matches.isEmpty() ? "No matching files found" :
+                    "Scan complete: " + matches.size() + " matching file" + (matches.size() == 1 ? "" : "s"));
+            });
+        });
+        
+        int result = JOptionPane.showConfirmDialog(parent, panel, "Select file to link", JOptionPane.OK_CANCEL_OPTION);
         if (result != JOptionPane.OK_OPTION) {
             return null;
         }
         
         return list.getSelectedValue();
     }
+
+    private static void insertMatch(DefaultListModel<File> model, JList<File> list, File match, Comparator<File> order) {
+        if (model.contains(match)) return;
+        int i = 0;
+        while (i < model.size() && order.compare(model.get(i), match) <= 0) i++;
+        model.add(i, match);
+        if (list.getSelectedIndex() < 0) list.setSelectedIndex(0); // Pre-select the best match so far
+    }
     
     /**
      * Helper class to hold relink criteria
@@ -500,11 +802,18 @@ public class RelinkService {
         public final boolean byNote;
         public final boolean byTitle;
         public final boolean byTrimmed;
+        // Also accept names close to the note or title, e.g. with a typo
+        public final boolean byFuzzy;
         
         public RelinkCriteria(boolean byNote, boolean byTitle, boolean byTrimmed) {
+            this(byNote, byTitle, byTrimmed, false);
+        }
+        
+        public RelinkCriteria(boolean byNote, boolean byTitle, boolean byTrimmed, boolean byFuzzy) {
             this.byNote = byNote;
             this.byTitle = byTitle;
             this.byTrimmed = byTrimmed;
+            this.byFuzzy = byFuzzy;
         }
     }
     
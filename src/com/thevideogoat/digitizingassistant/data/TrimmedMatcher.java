@@ -0,0 +1,86 @@
+package com.thevideogoat.digitizingassistant.data;
+
+import java.util.*;
+
+/**
+ * Finds which linked original a "_trimmed" file was cut from. A trimmed file matches an original
+ * if their normalized base names are equal, or if both carry the same digits. Every original is
+ * normalized once into a base-name map and a number map, so each trimmed file is two lookups
+ * instead of a comparison with every original.
+ */
+public class TrimmedMatcher {
+
+    private static final String TRIMMED_MARKER = "_trimmed";
+
+    private final List<FileReference> originals;
+    // Positions in originals, so matches come back in the order the originals were given
+    private final Map<String, List<Integer>> byBaseName = new HashMap<>();
+    private final Map<String, List<Integer>> byNumber = new HashMap<>();
+
+    public TrimmedMatcher(List<FileReference> originals) {
+        this.originals = new ArrayList<>(originals);
+        for (int i = 0; i < this.originals.size(); i++) {
+            String name = this.originals.get(i).getName();
+            byBaseName.computeIfAbsent(normalizeFilename(name), k -> new ArrayList<>(1)).add(i);
+            String number = extractNumber(name);
+            if (!number.isEmpty()) {
+                byNumber.computeIfAbsent(number, k -> new ArrayList<>(1)).add(i);
+            }
+        }
+    }
+
+    public static boolean isTrimmed(String fileName) {
+        return fileName.contains(TRIMMED_MARKER);
+    }
+
+    /**
+     * Originals the trimmed file could have been cut from; more than one means the match is
+     * ambiguous. Empty if the name isn't a trimmed file's.
+     */
+    public List<FileReference> matches(String trimmedName) {
+        int marker = trimmedName.indexOf(TRIMMED_MARKER);
+        if (marker < 0) {
+            return Collections.emptyList();
+        }
+        SortedSet<Integer> found = new TreeSet<>(byBaseName.getOrDefault(normalizeFilename(trimmedName.substring(0, marker)), Collections.emptyList()));
+        found.addAll(byNumber.getOrDefault(extractNumber(trimmedName), Collections.emptyList()));
+
+        List<FileReference> result = new ArrayList<>(found.size());
+        for (int i : found) {
+            result.add(originals.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * The name without its extension, keeping only ASCII letters and digits, lower-cased
+     */
+    public static String normalizeFilename(String name) {
+        int end = name.lastIndexOf('.');
+        if (end == -1) end = name.length();
+        StringBuilder normalized = new StringBuilder(end);
+        for (int i = 0; i < end; i++) {
+            char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                normalized.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                normalized.append((char) (c + ('a' - 'A')));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Every digit in the name, in order
+     */
+    public static String extractNumber(String name) {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+}
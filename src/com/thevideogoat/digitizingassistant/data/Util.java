@@ -102,8 +102,9 @@ public class Util {
             ++i;
             // Rename the file and replace it in the list
             File renamedFile = renameFile(fileRef.getFile(), c.name + (i > 1 ? " (" + i + ")" : ""));
-            iterator.set(new FileReference(renamedFile));
+            iterator.set(fileRef.movedTo(renamedFile));
         }
+        c.markDirty();
 
         // Completion dialog
         JOptionPane.showMessageDialog(null, "Renamed " + i + " files.", "Rename Success", JOptionPane.INFORMATION_MESSAGE);
@@ -121,8 +122,9 @@ public class Util {
             ++i;
             // Rename the file and replace it in the list
             File renamedFile = renameFile(fileRef.getFile(), c.note + (i > 1 ? " (" + i + ")" : ""));
-            iterator.set(new FileReference(renamedFile));
+            iterator.set(fileRef.movedTo(renamedFile));
         }
+        c.markDirty();
 
         // Completion dialog
         JOptionPane.showMessageDialog(null, "Renamed " + i + " files.", "Rename Success", JOptionPane.INFORMATION_MESSAGE);
@@ -241,6 +243,7 @@ public class Util {
 
     public static ArrayList<FileReference> getLinkedFiles(Project p){
         ArrayList<FileReference> linkedFiles = new ArrayList<>();
+        p.loadAllDetails();
         for (Conversion conversion : p.conversions) {
             linkedFiles.addAll(conversion.linkedFiles);
         }
@@ -951,7 +954,8 @@ public class Util {
             // Check if this reference points to the renamed file/directory
             if (fileRef.getPath().equals(oldPath)) {
                 // Update to point to the new file/directory
-                conversion.linkedFiles.set(i, new FileReference(newFile));
+                conversion.linkedFiles.set(i, fileRef.movedTo(newFile));
+                conversion.markDirty();
                 updated = true;
             }
         }
@@ -1027,6 +1031,7 @@ public class Util {
         if (updated) {
             conversion.linkedFiles.clear();
             conversion.linkedFiles.addAll(updatedReferences);
+            conversion.markDirty();
         }
         
         return updated;
@@ -0,0 +1,127 @@
+package com.thevideogoat.digitizingassistant.debug;
+
+import com.thevideogoat.digitizingassistant.data.Conversion;
+import com.thevideogoat.digitizingassistant.data.ConversionStatus;
+import com.thevideogoat.digitizingassistant.data.FileReference;
+import com.thevideogoat.digitizingassistant.data.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Measures project save latency against a fixed budget, so making saves crash-safe
+ * (temp file, sync, atomic rename) can be checked not to make them noticeably slower.
+ *
+ * Usage: SaveLatencyBenchmark [conversions] [iterations] [directory]
+ * Exits with status 1 if any save path is over budget.
+ */
+public class SaveLatencyBenchmark {
+
+    // Budgets in milliseconds for a 5000-conversion project on a local SSD
+    private static final double JOURNAL_SAVE_P99_BUDGET = 50;
+    private static final double FULL_SAVE_P50_BUDGET = 400;
+    private static final double BINARY_SAVE_P50_BUDGET = 200;
+
+    private static final int WARMUP_ITERATIONS = 10;
+
+    public static void main(String[] args) throws IOException {
+        int conversions = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        Path directory = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("save-benchmark");
+        double scale = conversions / 5000.0;
+
+        System.out.println("Saving " + conversions + " conversions, " + iterations + " iterations, in " + directory);
+        boolean withinBudget = true;
+
+        // Small edit saved through the journal: the common autosave case
+        Project project = createProject("Benchmark", conversions);
+        project.saveToFile(directory);
+        double[] journal = measure(iterations, i -> {
+            Conversion conversion = project.getConversions().get(i % conversions);
+            conversion.note = "Edited " + i;
+            conversion.markDirty();
+            project.saveChanges(directory);
+        });
+        withinBudget &= report("journal save", journal, 0.99, JOURNAL_SAVE_P99_BUDGET);
+
+        // Whole file rewritten, as on the first save or after compaction
+        double[] full = measure(iterations, i -> project.saveToFile(directory));
+        withinBudget &= report("full JSON save", full, 0.50, FULL_SAVE_P50_BUDGET * scale);
+
+        Project binary = createProject("BenchmarkBinary", conversions);
+        binary.convertFormat(directory, true);
+        double[] binarySaves = measure(iterations, i -> {
+            binary.getConversions().get(i % conversions).markDirty();
+            binary.saveChanges(directory);
+        });
+        withinBudget &= report("binary save", binarySaves, 0.50, BINARY_SAVE_P50_BUDGET * scale);
+
+        if (args.length <= 2) {
+            deleteDirectory(directory.toFile());
+        }
+        System.out.println(withinBudget ? "All saves within budget." : "Save latency over budget.");
+        System.exit(withinBudget ? 0 : 1);
+    }
+
+    private interface Save {
+        void run(int iteration) throws IOException;
+    }
+
+    /**
+     * Run a save repeatedly and return the sorted latencies in milliseconds, after a warm-up
+     */
+    private static double[] measure(int iterations, Save save) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            save.run(i);
+        }
+        double[] latencies = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            save.run(WARMUP_ITERATIONS + i);
+            latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static boolean report(String label, double[] latencies, double percentile, double budget) {
+        double p50 = percentile(latencies, 0.50);
+        double p99 = percentile(latencies, 0.99);
+        double measured = percentile(latencies, percentile);
+        boolean ok = measured <= budget;
+        System.out.printf("%-16s p50 %8.2f ms   p99 %8.2f ms   budget p%d %8.2f ms   %s%n",
+            label, p50, p99, Math.round(percentile * 100), budget, ok ? "OK" : "OVER");
+        return ok;
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static Project createProject(String name, int conversions) {
+        Project project = new Project(name);
+        ConversionStatus[] statuses = ConversionStatus.values();
+        for (int i = 0; i < conversions; i++) {
+            Conversion conversion = new Conversion("Tape " + (i + 1));
+            conversion.note = "Family tape " + i;
+            conversion.status = statuses[i % statuses.length];
+            conversion.linkedFiles.add(new FileReference("/captures/tape_" + (i + 1) + ".mp4"));
+            project.addConversion(conversion);
+        }
+        return project;
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
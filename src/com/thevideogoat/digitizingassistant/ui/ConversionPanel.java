@@ -1,6 +1,7 @@
 package com.thevideogoat.digitizingassistant.ui;
 
 import com.thevideogoat.digitizingassistant.data.*;
+import com.thevideogoat.digitizingassistant.util.FileScanner;
 
 import javax.swing.*;
 import javax.swing.border.BevelBorder;
@@ -17,7 +18,7 @@ import java.awt.datatransfer.StringSelection;
 import java.awt.Desktop;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -179,6 +180,20 @@ public class ConversionPanel extends JPanel {
 
         filesList = new JList<>();
         Theme.styleList(filesList);
+
+        // Flag files the background link check couldn't find
+        filesList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                Component c = super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (c instanceof JLabel && value instanceof FileReference && ((FileReference) value).isKnownMissing()) {
+                    JLabel label = (JLabel) c;
+                    label.setText(value + " (missing)");
+                    label.setForeground(isSelected ? Theme.TEXT : new Color(255, 100, 100));
+                }
+                return c;
+            }
+        });
         
         // Add right-click menu for files
         JPopupMenu fileMenu = new JPopupMenu();
@@ -213,7 +228,7 @@ public class ConversionPanel extends JPanel {
                             if (newFile.exists()) {
                                 int index = conversion.linkedFiles.indexOf(selectedFileRef);
                                 if (index != -1) {
-                                    conversion.linkedFiles.set(index, new FileReference(newFile));
+                                    conversion.linkedFiles.set(index, selectedFileRef.movedTo(newFile));
                                     updateLinkedFiles();
                                     projectFrame.markUnsavedChanges();
                                     JOptionPane.showMessageDialog(this,
@@ -281,7 +296,7 @@ public class ConversionPanel extends JPanel {
                             if (newFile.exists()) {
                                 int index = conversion.linkedFiles.indexOf(selectedFileRef);
                                 if (index != -1) {
-                                    conversion.linkedFiles.set(index, new FileReference(newFile));
+                                    conversion.linkedFiles.set(index, selectedFileRef.movedTo(newFile));
                                     updateLinkedFiles();
                                     projectFrame.markUnsavedChanges();
                                     JOptionPane.showMessageDialog(this,
@@ -348,7 +363,7 @@ public class ConversionPanel extends JPanel {
                     if (selectedFile.renameTo(newFile)) {
                         int index = conversion.linkedFiles.indexOf(selectedFileRef);
                         if (index != -1) {
-                            conversion.linkedFiles.set(index, new FileReference(newFile));
+                            conversion.linkedFiles.set(index, selectedFileRef.movedTo(newFile));
                             updateLinkedFiles();
                             projectFrame.markUnsavedChanges();
                         }
@@ -383,7 +398,7 @@ public class ConversionPanel extends JPanel {
                     if (newFile.exists()) {
                         int index = conversion.linkedFiles.indexOf(selectedFileRef);
                         if (index != -1) {
-                            conversion.linkedFiles.set(index, new FileReference(newFile));
+                            conversion.linkedFiles.set(index, selectedFileRef.movedTo(newFile));
                             updateLinkedFiles();
                             projectFrame.markUnsavedChanges();
                             JOptionPane.showMessageDialog(this,
@@ -941,6 +956,7 @@ public class ConversionPanel extends JPanel {
     // Add this method to update conversion data
     public void updateConversion() {
         // Update conversion properties
+        conversion.markDirty();
         conversion.type = (Type) typeSelector.getSelectedItem();
         conversion.note = noteField.getText();
         conversion.technicianNotes = technicianNotesField.getText();
@@ -1098,41 +1114,42 @@ public class ConversionPanel extends JPanel {
     }
     
     private String getFileSize(File file) {
-        try {
-            if (file.isDirectory()) {
-                return "Directory";
+        return getFileSize(FileScanner.readAttributes(file.toPath()));
+    }
+
+    private String getFileSize(BasicFileAttributes attributes) {
+        if (attributes == null) {
+            return "Size unknown";
+        } else if (attributes.isDirectory()) {
+            return "Directory";
+        } else {
+            long size = attributes.size();
+            if (size < 1024) {
+                return size + " bytes";
+            } else if (size < 1024 * 1024) {
+                return String.format("%.1f KB", size / 1024.0);
+            } else if (size < 1024 * 1024 * 1024) {
+                return String.format("%.1f MB", size / (1024.0 * 1024.0));
             } else {
-                long size = Files.size(file.toPath());
-                if (size < 1024) {
-                    return size + " bytes";
-                } else if (size < 1024 * 1024) {
-                    return String.format("%.1f KB", size / 1024.0);
-                } else if (size < 1024 * 1024 * 1024) {
-                    return String.format("%.1f MB", size / (1024.0 * 1024.0));
-                } else {
-                    return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
-                }
+                return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
             }
-        } catch (IOException e) {
-            return "Size unknown";
         }
     }
     
     private void exploreDirectory(File directory, DefaultMutableTreeNode parentNode) {
         try {
-            File[] contents = directory.listFiles();
-            if (contents != null) {
-                for (File item : contents) {
-                    DefaultMutableTreeNode childNode = new DefaultMutableTreeNode(item.getName());
-                    childNode.setUserObject(new FileData(item.getName(), item.getAbsolutePath(), getFileSize(item)));
-                    parentNode.add(childNode);
-                    
-                    // Recursively explore subdirectories (but limit depth to avoid performance issues)
-                    if (item.isDirectory() && parentNode.getLevel() < 3) { // Limit to 3 levels deep
-                        exploreDirectory(item, childNode);
-                    }
+            // The listing brings each entry's size and type along, so no stat per entry
+            FileScanner.list(directory.toPath(), (item, attributes) -> {
+                String name = item.getFileName().toString();
+                DefaultMutableTreeNode childNode = new DefaultMutableTreeNode(name);
+                childNode.setUserObject(new FileData(name, item.toAbsolutePath().toString(), getFileSize(attributes)));
+                parentNode.add(childNode);
+                
+                // Recursively explore subdirectories (but limit depth to avoid performance issues)
+                if (attributes.isDirectory() && parentNode.getLevel() < 3) { // Limit to 3 levels deep
+                    exploreDirectory(item.toFile(), childNode);
                 }
-            }
+            });
         } catch (Exception e) {
             // Add error node if we can't read directory
             DefaultMutableTreeNode errorNode = new DefaultMutableTreeNode("Error reading directory");
@@ -2,6 +2,7 @@ package com.thevideogoat.digitizingassistant.ui;
 
 import com.thevideogoat.digitizingassistant.data.FileReference;
 import com.thevideogoat.digitizingassistant.data.Project;
+import com.thevideogoat.digitizingassistant.data.ProjectBinaryCodec;
 import com.thevideogoat.digitizingassistant.data.Conversion;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -118,7 +119,7 @@ public class DigitizingAssistant {
         DefaultListModel<File> listModel = new DefaultListModel<>();
         if (allProjects != null) {
             for (File f : allProjects) {
-                if(f.getName().endsWith(".project") || f.getName().endsWith(".json")) {
+                if(f.getName().endsWith(".project") || f.getName().endsWith(".json") || f.getName().endsWith(ProjectBinaryCodec.EXTENSION)) {
                     listModel.addElement(f);
                 }
             }
@@ -290,7 +291,7 @@ public class DigitizingAssistant {
         importItem.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Import Project");
-            fileChooser.setFileFilter(new FileNameExtensionFilter("JSON files", "json"));
+            fileChooser.setFileFilter(new FileNameExtensionFilter("Project files (JSON, TVGP)", "json", "tvgp"));
             
             // Set the current directory to the last used directory
             String lastDir = Preferences.getInstance().getLastUsedDirectory();
@@ -23,6 +23,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -34,7 +35,11 @@ import java.util.List;
 
 import com.thevideogoat.digitizingassistant.data.FileReference;
 import com.thevideogoat.digitizingassistant.util.FileCacheManager;
+import com.thevideogoat.digitizingassistant.util.FileProbe;
+import com.thevideogoat.digitizingassistant.util.FileScanner;
+import com.thevideogoat.digitizingassistant.util.FilenameIndex;
 import com.thevideogoat.digitizingassistant.util.ExportUtil;
+import com.thevideogoat.digitizingassistant.util.LinkValidator;
 
 public class ProjectFrame extends JFrame {
 
@@ -47,13 +52,65 @@ public class ProjectFrame extends JFrame {
     private JPanel statusBar;
     private JButton newConversion;
     private JLabel saveStatusLabel;
+    private JLabel missingFilesLabel;
     private Timer saveStatusTimer;
+    // Linked files the background check couldn't find, by conversion; only touched on the EDT
+    private final Map<Conversion, List<FileReference>> missingFiles = new LinkedHashMap<>();
+    // Linked files on drives or shares that didn't respond to the check, so neither found nor missing
+    private final Map<Conversion, List<FileReference>> unavailableFiles = new LinkedHashMap<>();
     private boolean hasUnsavedChanges = false;
+    private final ProjectSaveService saveService;
+    // Counts edits so a finished save only clears the unsaved flag if nothing changed since
+    private int editCount = 0;
+    // Linked files changed on disk, gathered until the refresh timer fires
+    private final Set<String> changedFilePaths = new HashSet<>();
+    private Timer fileChangeTimer;
+    private final FileCacheManager.CacheScope cacheScope;
+    // Status and size totals for the status bar, kept up to date as conversions change
+    private final ProjectStats stats;
+    private final FileCacheManager.ChangeListener fileChangeListener = paths ->
+        SwingUtilities.invokeLater(() -> {
+            changedFilePaths.addAll(paths);
+            fileChangeTimer.restart();
+        });
+    // Files on a drive or share that was unreachable show as missing until it answers again
+    private final FileProbe.Listener reachabilityListener = (root, reachable) -> {
+        if (reachable) {
+            fileChangeListener.filesChanged(java.util.Collections.emptyList());
+            // Files that couldn't be checked can be now
+            SwingUtilities.invokeLater(() -> {
+                if (!unavailableFiles.isEmpty()) {
+                    validateLinkedFiles();
+                }
+            });
+        }
+    };
     private JComboBox<String> sortByDropdown;
 
     public ProjectFrame(Project project) {
         super();
         this.project = project;
+        this.cacheScope = FileCacheManager.getInstance().openScope(project.getName());
+        this.stats = new ProjectStats(this::calculateSizeAsync, () -> SwingUtilities.invokeLater(this::updateStatusBar));
+        stats.refresh(project.getConversions());
+        this.saveService = new ProjectSaveService(project, DigitizingAssistant.PROJECTS_DIRECTORY.toPath(),
+            SwingUtilities::invokeLater, new ProjectSaveService.Listener() {
+                @Override
+                public void autosaveDue() {
+                    if (hasUnsavedChanges) {
+                        ConversionPanel currentPanel = getCurrentConversionPanel();
+                        if (currentPanel != null) {
+                            currentPanel.updateConversion();
+                        }
+                        requestSave();
+                    }
+                }
+
+                @Override
+                public void saveCompleted(Throwable error) {
+                    SwingUtilities.invokeLater(() -> showSaveResult(error));
+                }
+            });
         setUndecorated(true);
         setSize(1200, 800);
         setLocationRelativeTo(null);
@@ -67,6 +124,12 @@ public class ProjectFrame extends JFrame {
         });
         saveStatusTimer.setRepeats(false);
 
+        // Refresh file details once a burst of changes on disk (e.g. a capture being written) settles
+        fileChangeTimer = new Timer(500, e -> refreshChangedFiles());
+        fileChangeTimer.setRepeats(false);
+        FileCacheManager.getInstance().addChangeListener(fileChangeListener);
+        FileProbe.getInstance().addListener(reachabilityListener);
+
         // Main container with modern styling
         JPanel mainPanel = new JPanel(new BorderLayout());
         Theme.stylePanel(mainPanel);
@@ -88,6 +151,170 @@ public class ProjectFrame extends JFrame {
         
         add(mainPanel);
         setVisible(true);
+
+        validateLinkedFiles();
+    }
+
+    /**
+     * Check every linked file in the background and list the missing ones in the status bar
+     */
+    private void validateLinkedFiles() {
+        missingFiles.clear();
+        unavailableFiles.clear();
+        missingFilesLabel.setText("Checking linked files...");
+        missingFilesLabel.setForeground(Theme.TEXT_SECONDARY);
+
+        LinkValidator.validateAsync(project, new LinkValidator.Listener() {
+            @Override
+            public void missing(Conversion conversion, FileReference file) {
+                SwingUtilities.invokeLater(() -> {
+                    missingFiles.computeIfAbsent(conversion, c -> new ArrayList<>()).add(file);
+                    updateMissingFilesLabel();
+
+                    // Show the missing marker if this conversion is open
+                    ConversionPanel currentPanel = getCurrentConversionPanel();
+                    if (currentPanel != null && currentPanel.conversion == conversion) {
+                        currentPanel.repaint();
+                    }
+                });
+            }
+
+            @Override
+            public void unavailable(Conversion conversion, FileReference file) {
+                SwingUtilities.invokeLater(() -> {
+                    unavailableFiles.computeIfAbsent(conversion, c -> new ArrayList<>()).add(file);
+                    updateMissingFilesLabel();
+                });
+            }
+
+            @Override
+            public void finished(int checked, int missing) {
+                SwingUtilities.invokeLater(() -> updateMissingFilesLabel());
+            }
+        });
+    }
+
+    private void updateMissingFilesLabel() {
+        int count = missingFiles.values().stream().mapToInt(List::size).sum();
+        int unavailable = unavailableFiles.values().stream().mapToInt(List::size).sum();
+        if (count == 0 && unavailable == 0) {
+            missingFilesLabel.setText("");
+            return;
+        }
+        List<String> parts = new ArrayList<>();
+        if (count > 0) {
+            parts.add(count + (count == 1 ? " linked file missing" : " linked files missing"));
+        }
+        if (unavailable > 0) {
+            parts.add(unavailable + " on drives not responding");
+        }
+        missingFilesLabel.setForeground(count > 0 ? new Color(255, 100, 100) : Theme.TEXT_SECONDARY);
+        missingFilesLabel.setText(String.join(", ", parts));
+    }
+
+    private void showMissingFilesDialog() {
+        if (missingFiles.isEmpty() && unavailableFiles.isEmpty()) {
+            return;
+        }
+
+        JDialog dialog = new JDialog(this, "Missing Linked Files", true);
+        dialog.setSize(600, 400);
+        dialog.setLocationRelativeTo(this);
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        Theme.stylePanel(panel);
+        panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        JLabel header = new JLabel("These linked files could not be found. They are kept until you relink or remove them.");
+        header.setForeground(Theme.TEXT);
+        panel.add(header, BorderLayout.NORTH);
+
+        DefaultListModel<String> listModel = new DefaultListModel<>();
+        for (Map.Entry<Conversion, List<FileReference>> entry : missingFiles.entrySet()) {
+            for (FileReference file : entry.getValue()) {
+                listModel.addElement(entry.getKey().name + ": " + file.getPath());
+            }
+        }
+        // Listed for information only; these may well still be there, so nothing acts on them
+        for (Map.Entry<Conversion, List<FileReference>> entry : unavailableFiles.entrySet()) {
+            for (FileReference file : entry.getValue()) {
+                listModel.addElement(entry.getKey().name + ": " + file.getPath() + " (drive not responding)");
+            }
+        }
+        JList<String> list = new JList<>(listModel);
+        Theme.styleList(list);
+        JScrollPane scrollPane = new JScrollPane(list);
+        Theme.styleScrollPane(scrollPane);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        buttons.setOpaque(false);
+        JButton relink = new JButton("Relink...");
+        JButton remove = new JButton("Remove Missing Links");
+        JButton close = new JButton("Close");
+        Theme.styleButton(relink);
+        Theme.styleButton(remove);
+        Theme.styleButton(close);
+        remove.setEnabled(!missingFiles.isEmpty());
+
+        relink.addActionListener(e -> {
+            dialog.dispose();
+            RelinkService.RelinkResult result = RelinkService.performRelink(
+                project,
+                null,
+                RelinkService.RelinkMode.INTERACTIVE,
+                RelinkService.RelinkScope.ALL_CONVERSIONS,
+                this
+            );
+            if (result.success && result.filesRelinked > 0) {
+                logFileOperation("RELINK MISSING", "Relinked " + result.filesRelinked + " files");
+                saveProject();
+            }
+            JOptionPane.showMessageDialog(this, result.message, "Relink", JOptionPane.INFORMATION_MESSAGE);
+            validateLinkedFiles();
+        });
+
+        remove.addActionListener(e -> {
+            int confirm = JOptionPane.showConfirmDialog(dialog,
+                "Remove all missing files from their conversions?",
+                "Remove Missing Links",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+            if (confirm != JOptionPane.YES_OPTION) {
+                return;
+            }
+            for (Map.Entry<Conversion, List<FileReference>> entry : missingFiles.entrySet()) {
+                Conversion conversion = entry.getKey();
+                // Only files the last check found gone; one whose state has been dropped since,
+                // e.g. by a change on disk, is no longer known to be missing
+                List<FileReference> gone = new ArrayList<>();
+                for (FileReference file : entry.getValue()) {
+                    if (file.isKnownMissing()) {
+                        gone.add(file);
+                    }
+                }
+                // The check ran on the links the index lists; read the conversion before editing them
+                conversion.loadDetails();
+                if (conversion.linkedFiles.removeAll(gone)) {
+                    conversion.markDirty();
+                    logFileOperation("REMOVE MISSING", conversion.name + ": " + gone.size() + " files");
+                }
+            }
+            missingFiles.clear();
+            updateMissingFilesLabel();
+            dialog.dispose();
+            saveProject();
+        });
+
+        close.addActionListener(e -> dialog.dispose());
+
+        buttons.add(relink);
+        buttons.add(remove);
+        buttons.add(close);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        dialog.add(panel);
+        dialog.setVisible(true);
     }
 
     private JPanel createTitleBar() {
@@ -177,11 +404,12 @@ public class ProjectFrame extends JFrame {
                 parentDirs.add(fileRef.getParentFile());
             }
             
-            // Search each parent directory and its subdirectories
+            // Search each parent directory and its subdirectories, skipping ones inside another
+            TrimmedMatcher matcher = new TrimmedMatcher(allFiles);
             Map<FileReference, File> trimmedFileMap = new HashMap<>();
             for (File parentDir : parentDirs) {
-                if (parentDir != null && parentDir.exists()) {
-                    searchForTrimmedFiles(parentDir, allFiles, trimmedFileMap);
+                if (parentDir != null && !isInsideAny(parentDir, parentDirs) && parentDir.exists()) {
+                    searchForTrimmedFiles(parentDir, matcher, trimmedFileMap);
                 }
             }
             
@@ -223,6 +451,7 @@ public class ProjectFrame extends JFrame {
                         int index = c.linkedFiles.indexOf(originalFileRef);
                         if (index != -1) {
                             c.linkedFiles.set(index, new FileReference(trimmedFile));
+                            c.markDirty();
                             // Log each relink operation
                             logFileOperation("RELINK", 
                                 "Original: " + originalFileRef.getPath() + 
@@ -231,6 +460,7 @@ public class ProjectFrame extends JFrame {
                         }
                     }
                 }
+                stats.refresh(project.getConversions());
                 markUnsavedChanges();
                 
                 // Log the completion
@@ -446,6 +676,36 @@ public class ProjectFrame extends JFrame {
         });
         menu.add(smartBulkRelink);
         
+        // Find files renamed or moved outside the app by their content
+        JMenuItem fingerprintRelink = new JMenuItem("Find Moved Files by Fingerprint");
+        fingerprintRelink.setToolTipText("Relink missing files by size and content, whatever they are now called");
+        fingerprintRelink.addActionListener(e -> {
+            RelinkService.RelinkResult result = RelinkService.performFingerprintRelink(project, this);
+            
+            // Log the operations
+            if (result.success && result.filesRelinked > 0) {
+                logFileOperation("FINGERPRINT RELINK", "Successfully relinked " + result.filesRelinked + " missing files by fingerprint");
+            }
+            
+            JOptionPane.showMessageDialog(this,
+                result.message,
+                result.success ? "Fingerprint Relink" : "Relink Failed",
+                result.success ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+        });
+        menu.add(fingerprintRelink);
+        
+        // Fingerprints are read on request only, since that reads every linked file
+        JMenuItem recordFingerprints = new JMenuItem("Record File Fingerprints");
+        recordFingerprints.setToolTipText("Read a small sample of each linked file so it can be found by fingerprint if it is moved");
+        recordFingerprints.addActionListener(e -> {
+            RelinkService.RelinkResult result = RelinkService.recordFingerprints(project, this);
+            JOptionPane.showMessageDialog(this,
+                result.message,
+                "Record File Fingerprints",
+                result.success ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+        });
+        menu.add(recordFingerprints);
+        
         openProjectFolder.addActionListener(e -> {
             try {
                 Desktop.getDesktop().open(DigitizingAssistant.PROJECTS_DIRECTORY);
@@ -479,7 +739,21 @@ public class ProjectFrame extends JFrame {
         writeToDestination.addActionListener(e -> showWriteToDestinationDialog());
         menu.add(writeToDestination);
         
+        // Switch between the JSON and compact binary project formats
+        JMenuItem convertFormat = new JMenuItem(project.isBinaryFormat() ? "Convert to JSON Format" : "Convert to Binary Format");
+        convertFormat.setToolTipText("Binary project files open much faster for very large projects; JSON stays readable and portable");
+        convertFormat.addActionListener(e -> {
+            saveProject();
+            // Let the background write finish before the file is replaced
+            saveService.saveAndWait();
+            boolean toBinary = !project.isBinaryFormat();
+            project.convertFormat(DigitizingAssistant.PROJECTS_DIRECTORY.toPath(), toBinary);
+            convertFormat.setText(toBinary ? "Convert to JSON Format" : "Convert to Binary Format");
+            logFileOperation("CONVERT FORMAT", "Project saved as " + (toBinary ? "binary (.tvgp)" : "JSON"));
+        });
+
         menu.addSeparator();
+        menu.add(convertFormat);
         menu.add(openProjectFolder);
         
         menuButton.addActionListener(e -> {
@@ -527,7 +801,16 @@ public class ProjectFrame extends JFrame {
 
         closeBtn.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
-                saveProject();
+                ConversionPanel currentPanel = getCurrentConversionPanel();
+                if (currentPanel != null) {
+                    currentPanel.updateConversion();
+                }
+                saveService.saveAndWait();
+                saveService.shutdown();
+                FileCacheManager.getInstance().removeChangeListener(fileChangeListener);
+                FileProbe.getInstance().removeListener(reachabilityListener);
+                cacheScope.close();
+                fileChangeTimer.stop();
                 dispose();
                 DigitizingAssistant.getInstance().chooseProject();
             }
@@ -865,20 +1148,7 @@ public class ProjectFrame extends JFrame {
         updateConversionButtonStyle(conversionBtn, conversion, false);
         
         // Add tooltip with status and file information
-        String tooltipText = "Status: " + conversion.status.toString();
-        if (conversion.linkedFiles != null && !conversion.linkedFiles.isEmpty()) {
-            tooltipText += "\nFiles: " + conversion.linkedFiles.size() + " linked";
-            if (conversion.duration != null && !conversion.duration.isZero()) {
-                tooltipText += "\nDuration: " + formatDuration(conversion.duration);
-            }
-        } else {
-            tooltipText += "\nNo files linked";
-        }
-        if (!conversion.note.isEmpty()) {
-            tooltipText += "\nNote: " + conversion.note;
-        }
-        tooltipText += "\nRight-click for more options";
-        conversionBtn.setToolTipText(tooltipText);
+        conversionBtn.setToolTipText(sidebarTooltip(conversion));
         
         // Add click handler with selection state
         conversionBtn.addActionListener(e -> {
@@ -905,6 +1175,53 @@ public class ProjectFrame extends JFrame {
         conversionListPanel.add(Box.createVerticalStrut(5));
     }
 
+    /**
+     * Tooltip for a conversion's sidebar button: status and file information
+     */
+    private String sidebarTooltip(Conversion conversion) {
+        String tooltipText = "Status: " + conversion.status.toString();
+        if (!conversion.isDetailsLoaded()) {
+            // Files and notes aren't read until the conversion is opened
+        } else if (conversion.linkedFiles != null && !conversion.linkedFiles.isEmpty()) {
+            tooltipText += "\nFiles: " + conversion.linkedFiles.size() + " linked";
+            if (conversion.duration != null && !conversion.duration.isZero()) {
+                tooltipText += "\nDuration: " + formatDuration(conversion.duration);
+            }
+        } else {
+            tooltipText += "\nNo files linked";
+        }
+        if (conversion.isDetailsLoaded() && !conversion.note.isEmpty()) {
+            tooltipText += "\nNote: " + conversion.note;
+        }
+        tooltipText += "\nRight-click for more options";
+        return tooltipText;
+    }
+
+    /**
+     * Bring the sidebar's tooltips up to date if it already lists these conversions, by name and
+     * in this order. Returns false if the sidebar has to be rebuilt instead.
+     */
+    private boolean refreshSidebarInPlace(List<Conversion> conversions) {
+        List<JButton> buttons = new ArrayList<>();
+        for (Component c : conversionListPanel.getComponents()) {
+            if (c instanceof JButton) {
+                buttons.add((JButton) c);
+            }
+        }
+        if (buttons.size() != conversions.size()) {
+            return false;
+        }
+        for (int i = 0; i < buttons.size(); i++) {
+            if (!buttons.get(i).getText().equals(conversions.get(i).name)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < buttons.size(); i++) {
+            buttons.get(i).setToolTipText(sidebarTooltip(conversions.get(i)));
+        }
+        return true;
+    }
+
     private void updateConversionButtonStyle(JButton button, Conversion conversion, boolean isSelected) {
         Color statusColor = conversion.getStatusColor();
         
@@ -1004,33 +1321,59 @@ public class ProjectFrame extends JFrame {
     public void saveProject() {
         // Capture currently displayed conversion for reselection after sort/refresh
         Conversion currentConversion = null;
-        if (detailsPanel.getComponentCount() > 0 && 
-            detailsPanel.getComponent(0) instanceof JScrollPane &&
-            ((JScrollPane)detailsPanel.getComponent(0)).getViewport().getView() instanceof ConversionPanel) {
-            ConversionPanel currentPanel = (ConversionPanel)((JScrollPane)detailsPanel.getComponent(0)).getViewport().getView();
+        ConversionPanel currentPanel = getCurrentConversionPanel();
+        if (currentPanel != null) {
             currentPanel.updateConversion();
             currentConversion = currentPanel.conversion;
         }
 
-        project.saveToFile(DigitizingAssistant.PROJECTS_DIRECTORY.toPath());
+        requestSave();
         
-        // Auto-sort conversions after saving using current dropdown selection
+        // Auto-sort conversions after saving using current dropdown selection. The sidebar is only
+        // rebuilt when the order or a name changed, which most saves don't.
         String currentSortBy = sortByDropdown.getSelectedItem().toString();
-        project.setConversions(Util.sortConversionsBy(project.getConversions(), currentSortBy));
-        if (currentConversion != null) {
-            refreshConversionListAndReselect(currentConversion);
-        } else {
-            refreshConversionList();
+        ArrayList<Conversion> sorted = Util.sortConversionsBy(project.getConversions(), currentSortBy);
+        if (!sorted.equals(project.getConversions()) || !refreshSidebarInPlace(sorted)) {
+            project.setConversions(sorted);
+            if (currentConversion != null) {
+                refreshConversionListAndReselect(currentConversion);
+            } else {
+                refreshConversionList();
+            }
         }
         
         updateButtonColors();
+        // Saving follows bulk changes (relinks, deletes, duplicates), so recount everything here
+        stats.refresh(project.getConversions());
         updateStatusBar();
-        
+    }
+
+    /**
+     * Hand the project to the background save service; the status label updates when the write finishes
+     */
+    private void requestSave() {
+        final int editsAtSave = editCount;
+        saveService.save().thenRun(() -> SwingUtilities.invokeLater(() -> {
+            if (editCount == editsAtSave) {
+                hasUnsavedChanges = false;
+                updateStatusBar();
+            }
+        }));
+        saveStatusTimer.stop();
+        saveStatusLabel.setForeground(Theme.TEXT_SECONDARY);
+        saveStatusLabel.setText("Saving...");
+    }
+
+    private void showSaveResult(Throwable error) {
+        if (error != null) {
+            saveStatusLabel.setForeground(new Color(255, 100, 100));
+            saveStatusLabel.setText("Save failed: " + error.getMessage());
+            return;
+        }
         // Show save status in green
         saveStatusLabel.setForeground(new Color(40, 167, 69)); // Bootstrap success green
         saveStatusLabel.setText("Saved " + java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss")));
         saveStatusTimer.restart();
-        hasUnsavedChanges = false;
     }
 
     private void addResizeBorder(JPanel mainPanel) {
@@ -1160,6 +1503,18 @@ public class ProjectFrame extends JFrame {
         saveStatusLabel = new JLabel();
         saveStatusLabel.setForeground(Theme.TEXT_SECONDARY);
         saveStatusLabel.setFont(Theme.SMALL_FONT);
+
+        missingFilesLabel = new JLabel();
+        missingFilesLabel.setForeground(Theme.TEXT_SECONDARY);
+        missingFilesLabel.setFont(Theme.SMALL_FONT);
+        missingFilesLabel.setToolTipText("Click to relink or remove missing files");
+        missingFilesLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        missingFilesLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                showMissingFilesDialog();
+            }
+        });
         
         // Create a panel for the left side labels with spacing
         JPanel leftPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
@@ -1167,6 +1522,7 @@ public class ProjectFrame extends JFrame {
         leftPanel.add(progressLabel);
         leftPanel.add(Box.createHorizontalStrut(20)); // Add spacing
         leftPanel.add(saveStatusLabel);
+        leftPanel.add(missingFilesLabel);
         
         statusBar.add(leftPanel, BorderLayout.WEST);
         statusBar.add(durationLabel, BorderLayout.EAST);
@@ -1177,57 +1533,60 @@ public class ProjectFrame extends JFrame {
         updateStatusBar();
     }
 
+    /**
+     * Show the running totals; reads counters only, so it is cheap enough to call on every edit
+     */
     private void updateStatusBar() {
         if (statusBar != null) {
-            int total = project.getConversions().size();
-            long completed = project.getConversions().stream()
-                .filter(c -> c.status == ConversionStatus.COMPLETED)
-                .count();
+            int total = stats.getConversionCount();
+            int completed = stats.getCount(ConversionStatus.COMPLETED);
             
             // Create progress info
             String progressText = String.format("Completed: %d/%d (%.1f%%)", 
                 completed, total, (completed * 100.0) / Math.max(1, total));
+            String sizeText = String.format("Total Size: %s", formatSize(stats.getTotalSize()));
             
-            // Calculate total size asynchronously with caching
-            calculateTotalSizeAsync().thenAccept(totalSize -> {
-                String sizeText = String.format("Total Size: %s", formatSize(totalSize));
+            Component[] components = statusBar.getComponents();
+            if (components.length >= 2) {
+                JPanel leftPanel = (JPanel) components[0];
+                JLabel progressLabel = (JLabel) leftPanel.getComponent(0);
+                JLabel saveLabel = (JLabel) leftPanel.getComponent(2);
                 
-                // Update status bar labels on EDT
-                SwingUtilities.invokeLater(() -> {
-                    Component[] components = statusBar.getComponents();
-                    if (components.length >= 2) {
-                        JPanel leftPanel = (JPanel) components[0];
-                        JLabel progressLabel = (JLabel) leftPanel.getComponent(0);
-                        JLabel saveLabel = (JLabel) leftPanel.getComponent(2);
-                        
-                        progressLabel.setText(progressText);
-                        if (hasUnsavedChanges) {
-                            saveLabel.setForeground(new Color(255, 100, 100));
-                            saveLabel.setText("Changes not saved");
-                        } else {
-                            saveLabel.setForeground(Theme.TEXT_SECONDARY);
-                        }
-                        ((JLabel)components[1]).setText(sizeText);
-                    }
-                });
-            });
+                progressLabel.setText(progressText);
+                if (hasUnsavedChanges) {
+                    saveLabel.setForeground(new Color(255, 100, 100));
+                    saveLabel.setText("Changes not saved");
+                } else {
+                    saveLabel.setForeground(Theme.TEXT_SECONDARY);
+                }
+                ((JLabel)components[1]).setText(sizeText);
+            }
         }
     }
     
     /**
-     * Calculate total size asynchronously using the cache manager
+     * Pick up linked files that changed on disk: drop their cached details and redraw
      */
-    private CompletableFuture<Long> calculateTotalSizeAsync() {
-        FileCacheManager cacheManager = FileCacheManager.getInstance();
-        ArrayList<FileReference> allFiles = new ArrayList<>();
-        
-        for (Conversion conversion : project.getConversions()) {
-            if (conversion.linkedFiles != null) {
-                allFiles.addAll(conversion.linkedFiles);
+    private void refreshChangedFiles() {
+        ConversionPanel currentPanel = getCurrentConversionPanel();
+        if (currentPanel != null && currentPanel.conversion.linkedFiles != null) {
+            for (FileReference fileRef : currentPanel.conversion.linkedFiles) {
+                if (changedFilePaths.contains(fileRef.getPath())) {
+                    fileRef.invalidateCache();
+                }
             }
+            currentPanel.filesList.repaint();
         }
-        
-        return cacheManager.calculateTotalSizeAsync(allFiles);
+        stats.resize(changedFilePaths);
+        changedFilePaths.clear();
+        updateStatusBar();
+    }
+
+    /**
+     * Size one conversion's linked files using the cache manager
+     */
+    private CompletableFuture<Long> calculateSizeAsync(List<FileReference> links) {
+        return FileCacheManager.getInstance().calculateTotalSizeAsync(links, cacheScope);
     }
 
     /**
@@ -1239,15 +1598,8 @@ public class ProjectFrame extends JFrame {
         for (Conversion conversion : project.getConversions()) {
             if (conversion.linkedFiles != null) {
                 for (FileReference file : conversion.linkedFiles) {
-                    if (file.exists()) {
-                        if (file.getFile().isFile()) {
-                            // Add size of the file itself
-                            totalSize += file.length();
-                        } else if (file.getFile().isDirectory()) {
-                            // Recursively calculate size of all files in directory
-                            totalSize += calculateDirectorySize(file.getFile());
-                        }
-                    }
+                    // Size of the file itself, or of all files in the directory
+                    totalSize += calculateDirectorySize(file.getFile());
                 }
             }
         }
@@ -1256,52 +1608,31 @@ public class ProjectFrame extends JFrame {
     }
 
     /**
-     * Recursively calculate the total size of all files in a directory
+     * Total size of all files in a directory, or the size of a single file
      */
     private long calculateDirectorySize(File directory) {
-        long size = 0;
-        
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        size += file.length();
-                    } else if (file.isDirectory()) {
-                        // Recursively calculate subdirectory size
-                        size += calculateDirectorySize(file);
-                    }
-                }
-            }
-        }
-        
-        return size;
+        return FileScanner.totalSize(directory.toPath());
     }
 
     /**
-     * Recursively process a directory for statistics (file count, size, and type breakdown)
+     * Add a file, or every file in a directory, to the statistics (type breakdown by count and size).
+     * Returns the number of files and their total size.
      */
-    private void processDirectoryForStatisticsRecursive(File directory, int totalFiles, long totalSize, 
-                                                       Map<String, Integer> typeCount, Map<String, Long> typeSize) {
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        totalFiles++;
-                        long size = file.length();
-                        totalSize += size;
-
-                        String type = getExtension(new FileReference(file)).toLowerCase();
-                        typeCount.merge(type, 1, Integer::sum);
-                        typeSize.merge(type, size, Long::sum);
-                    } else if (file.isDirectory()) {
-                        // Recursively process subdirectories
-                        processDirectoryForStatisticsRecursive(file, totalFiles, totalSize, typeCount, typeSize);
-                    }
-                }
-            }
+    private long[] processDirectoryForStatisticsRecursive(File directory, Map<String, Integer> typeCount, Map<String, Long> typeSize) {
+        long[] totals = new long[2];
+        try {
+            FileScanner.walkFiles(directory.toPath(), Integer.MAX_VALUE, (file, attributes) -> {
+                totals[0]++;
+                totals[1] += attributes.size();
+
+                String type = getExtension(file.getFileName().toString()).toLowerCase();
+                typeCount.merge(type, 1, Integer::sum);
+                typeSize.merge(type, attributes.size(), Long::sum);
+            });
+        } catch (IOException e) {
+            // Missing or unreadable, nothing to count
         }
+        return totals;
     }
 
     private void addQuickActionBar(JPanel sidebar) {
@@ -1318,6 +1649,7 @@ public class ProjectFrame extends JFrame {
 
     private void exportProjectAsJson() {
         try {
+            project.loadAllDetails();
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Export Project");
             fileChooser.setFileFilter(new FileNameExtensionFilter("JSON files", "json"));
@@ -1592,6 +1924,7 @@ public class ProjectFrame extends JFrame {
     }
 
     private void showMediaStatistics() {
+        project.loadAllDetails();
         JDialog dialog = new JDialog(this, "Media Statistics", true);
         dialog.setSize(400, 500);
         dialog.setLocationRelativeTo(this);
@@ -1622,20 +1955,10 @@ public class ProjectFrame extends JFrame {
         for (Conversion conversion : project.getConversions()) {
             if (conversion.linkedFiles != null) {
                 for (FileReference file : conversion.linkedFiles) {
-                    if (file.exists()) {
-                        if (file.getFile().isFile()) {
-                            totalFiles++;
-                            long size = file.length();
-                            totalSize += size;
-
-                            String type = getExtension(file).toLowerCase();
-                            typeCount.merge(type, 1, Integer::sum);
-                            typeSize.merge(type, size, Long::sum);
-                        } else if (file.getFile().isDirectory()) {
-                            // Process all files in directory recursively
-                            processDirectoryForStatisticsRecursive(file.getFile(), totalFiles, totalSize, typeCount, typeSize);
-                        }
-                    }
+                    // A linked file counts itself, a linked directory every file inside it
+                    long[] totals = processDirectoryForStatisticsRecursive(file.getFile(), typeCount, typeSize);
+                    totalFiles += (int) totals[0];
+                    totalSize += totals[1];
                 }
             }
         }
@@ -1754,6 +2077,7 @@ public class ProjectFrame extends JFrame {
     }
 
     private void showConversionDetails(Conversion conversion) {
+        conversion.loadDetails();
         detailsPanel.removeAll();
         ConversionPanel conversionPanel = new ConversionPanel(conversion, this);
         JScrollPane scrollPane = new JScrollPane(conversionPanel);
@@ -1802,6 +2126,7 @@ public class ProjectFrame extends JFrame {
         delete.setToolTipText("Permanently delete this conversion (cannot be undone)");
         
         duplicate.addActionListener(e -> {
+            conversion.loadDetails();
             Conversion newConversion = new Conversion(conversion.name + " (Copy)");
             newConversion.type = conversion.type;
             newConversion.note = conversion.note;
@@ -1855,57 +2180,54 @@ public class ProjectFrame extends JFrame {
 
     // Add this method to mark changes as unsaved
     public void markUnsavedChanges() {
+        ConversionPanel currentPanel = getCurrentConversionPanel();
+        if (currentPanel != null) {
+            currentPanel.conversion.markDirty();
+            stats.update(currentPanel.conversion);
+        }
         hasUnsavedChanges = true;
+        editCount++;
+        saveService.changed();
         updateStatusBar();
     }
 
-    // Helper method to normalize filenames for matching
-    private String normalizeFilename(String name) {
-        // Remove extension
-        int dot = name.lastIndexOf('.');
-        if (dot != -1) name = name.substring(0, dot);
-        // Remove spaces, parentheses, dashes, underscores, and non-alphanumeric
-        return name.replaceAll("[\\s\\(\\)\\-_.]", "").replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
+    private ConversionPanel getCurrentConversionPanel() {
+        if (detailsPanel.getComponentCount() > 0 &&
+            detailsPanel.getComponent(0) instanceof JScrollPane &&
+            ((JScrollPane)detailsPanel.getComponent(0)).getViewport().getView() instanceof ConversionPanel) {
+            return (ConversionPanel)((JScrollPane)detailsPanel.getComponent(0)).getViewport().getView();
+        }
+        return null;
     }
 
-    // Helper method to extract numeric part from filename
-    private String extractNumber(String name) {
-        return name.replaceAll("\\D", "");
+    // Recursively search for trimmed files and match each to its original in the matcher
+    private void searchForTrimmedFiles(File directory, TrimmedMatcher matcher, Map<FileReference, File> trimmedFileMap) {
+        try {
+            FileScanner.walkFiles(directory.toPath(), Integer.MAX_VALUE, (path, attributes) -> {
+                String trimmedName = path.getFileName().toString();
+                if (!TrimmedMatcher.isTrimmed(trimmedName)) {
+                    return;
+                }
+                List<FileReference> possibleMatches = matcher.matches(trimmedName);
+                if (possibleMatches.size() == 1) {
+                    trimmedFileMap.put(possibleMatches.get(0), path.toFile());
+                } else if (possibleMatches.size() > 1) {
+                    // Ambiguous, log for user review
+                    logFileOperation("AMBIGUOUS MATCH", "Trimmed file '" + trimmedName + "' matches multiple originals: " + possibleMatches);
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not search " + directory + " for trimmed files: " + e.getMessage());
+        }
     }
 
-    // Improved helper method to recursively search for trimmed files
-    private void searchForTrimmedFiles(File directory, ArrayList<FileReference> originalFiles, Map<FileReference, File> trimmedFileMap) {
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    // Recursively search subdirectories
-                    searchForTrimmedFiles(file, originalFiles, trimmedFileMap);
-                } else {
-                    String trimmedName = file.getName();
-                    if (trimmedName.contains("_trimmed")) {
-                        String trimmedNorm = normalizeFilename(trimmedName.substring(0, trimmedName.indexOf("_trimmed")));
-                        String trimmedNum = extractNumber(trimmedName);
-                        ArrayList<FileReference> possibleMatches = new ArrayList<>();
-                        for (FileReference originalFileRef : originalFiles) {
-                            String origName = originalFileRef.getName();
-                            String origNorm = normalizeFilename(origName);
-                            String origNum = extractNumber(origName);
-                            // Match if normalized base matches or number matches
-                            if (origNorm.equals(trimmedNorm) || (!origNum.isEmpty() && origNum.equals(trimmedNum))) {
-                                possibleMatches.add(originalFileRef);
-                            }
-                        }
-                        if (possibleMatches.size() == 1) {
-                            trimmedFileMap.put(possibleMatches.get(0), file);
-                        } else if (possibleMatches.size() > 1) {
-                            // Ambiguous, log for user review
-                            logFileOperation("AMBIGUOUS MATCH", "Trimmed file '" + file.getName() + "' matches multiple originals: " + possibleMatches);
-                        }
-                    }
-                }
+    private static boolean isInsideAny(File directory, Set<File> others) {
+        for (File parent = directory.getParentFile(); parent != null; parent = parent.getParentFile()) {
+            if (others.contains(parent)) {
+                return true;
             }
         }
+        return false;
     }
 
     // Add this method to create and write to log files
@@ -1936,6 +2258,7 @@ public class ProjectFrame extends JFrame {
 
     // Helper to gather all files in project directories
     private ArrayList<FileReference> getAllFilesInProjectDirectories() {
+        project.loadAllDetails();
         HashSet<File> dirs = new HashSet<>();
         for (Conversion c : project.getConversions()) {
             for (FileReference f : c.linkedFiles) {
@@ -1946,22 +2269,14 @@ public class ProjectFrame extends JFrame {
         }
         ArrayList<FileReference> allFiles = new ArrayList<>();
         for (File dir : dirs) {
-            gatherFilesRecursive(dir, allFiles);
-        }
-        return allFiles;
-    }
-
-    private void gatherFilesRecursive(File dir, ArrayList<FileReference> allFiles) {
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File f : files) {
-                if (f.isDirectory()) {
-                    gatherFilesRecursive(f, allFiles);
-                } else {
-                    allFiles.add(new FileReference(f));
+            // The saved relink index only re-lists directories that changed since the last run
+            if (!isInsideAny(dir, dirs) && dir.isDirectory()) {
+                for (File file : FilenameIndex.forRoot(dir).getFiles()) {
+                    allFiles.add(new FileReference(file));
                 }
             }
         }
+        return allFiles;
     }
 
     // Legacy method for backward compatibility - now uses the improved Util method
@@ -1976,7 +2291,10 @@ public class ProjectFrame extends JFrame {
     }
 
     private String getExtension(FileReference file) {
-        String name = file.getName();
+        return getExtension(file.getName());
+    }
+
+    private String getExtension(String name) {
         int dot = name.lastIndexOf('.');
         return (dot != -1) ? name.substring(dot) : "";
     }
@@ -2023,6 +2341,7 @@ public class ProjectFrame extends JFrame {
     }
     
     private void showWriteToDestinationDialog() {
+        project.loadAllDetails();
         // Create destination selection dialog
         JFileChooser destinationChooser = new JFileChooser();
         destinationChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
@@ -2232,6 +2551,9 @@ public class ProjectFrame extends JFrame {
 
     private void showSmartRenameDialog() {
         try {
+            // Every check below reads linked files, which conversions opened from the index don't have yet
+            project.loadAllDetails();
+            
             // Pre-validation: Check for potential issues
             List<String> validationErrors = new ArrayList<>();
             List<String> validationWarnings = new ArrayList<>();
@@ -2564,6 +2886,7 @@ public class ProjectFrame extends JFrame {
     }
     
     private Map<String, ConversionCategory> analyzeConversions() {
+        project.loadAllDetails();
         Map<String, ConversionCategory> categories = new HashMap<>();
         
         for (Conversion conversion : project.getConversions()) {
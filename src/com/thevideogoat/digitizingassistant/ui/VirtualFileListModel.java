@@ -16,7 +16,7 @@ public class VirtualFileListModel extends AbstractListModel<FileReference> {
     
     private final List<FileReference> files;
     private final FileCacheManager cacheManager;
-    private boolean isLoading = false;
+    private volatile boolean isLoading = false;
     
     public VirtualFileListModel(List<FileReference> files) {
         this.files = new ArrayList<>(files);
@@ -38,9 +38,9 @@ public class VirtualFileListModel extends AbstractListModel<FileReference> {
         if (index >= 0 && index < files.size()) {
             FileReference fileRef = files.get(index);
             
-            // Trigger metadata loading in background if not already cached
+            // Trigger metadata loading in background if not already cached; never stat on the EDT
             if (!isLoading) {
-                cacheManager.getFileMetadata(fileRef);
+                cacheManager.getFileMetadataAsync(fileRef);
             }
             
             return fileRef;
@@ -102,13 +102,12 @@ public class VirtualFileListModel extends AbstractListModel<FileReference> {
         if (isLoading) return;
         
         isLoading = true;
-        CompletableFuture.runAsync(() -> {
-            try {
-                cacheManager.preloadMetadataAsync(files);
-            } finally {
-                isLoading = false;
-            }
-        });
+        List<CompletableFuture<FileCacheManager.FileMetadata>> reads = new ArrayList<>(files.size());
+        for (FileReference fileRef : files) {
+            reads.add(cacheManager.getFileMetadataAsync(fileRef));
+        }
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0]))
+            .whenComplete((done, error) -> isLoading = false);
     }
     
     /**
@@ -0,0 +1,195 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import java.util.*;
+
+/**
+ * Thread-safe least-recently-used cache capped by entry count and by estimated memory.
+ * Keeps hit, miss and eviction counts.
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Estimates how many bytes an entry keeps alive.
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    /**
+     * Told about entries dropped to stay within the caps. Called without the cache locked.
+     */
+    public interface EvictionListener<K, V> {
+        void evicted(K key, V value);
+    }
+
+    /**
+     * Counters and occupancy at one point in time.
+     */
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final int entries;
+        public final long estimatedBytes;
+
+        Stats(long hits, long misses, long evictions, int entries, long estimatedBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d entries (~%d KB), %d hits, %d misses, %d evictions",
+                entries, estimatedBytes / 1024, hits, misses, evictions);
+        }
+    }
+
+    private static class Weighted<V> {
+        final V value;
+        final long weight;
+
+        Weighted(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Weigher<K, V> weigher;
+    private final EvictionListener<K, V> listener;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<K, Weighted<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BoundedCache(int maxEntries, long maxBytes, Weigher<K, V> weigher, EvictionListener<K, V> listener) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        this.listener = listener;
+    }
+
+    public V get(K key) {
+        synchronized (this) {
+            Weighted<V> entry = map.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.value;
+        }
+    }
+
+    public void put(K key, V value) {
+        List<Map.Entry<K, V>> evicted;
+        synchronized (this) {
+            insert(key, value);
+            evicted = evictOverflow();
+        }
+        notifyEvicted(evicted);
+    }
+
+    /**
+     * Add an entry unless the key is already cached. Doesn't count as a hit or miss.
+     */
+    public void putIfAbsent(K key, V value) {
+        List<Map.Entry<K, V>> evicted;
+        synchronized (this) {
+            if (map.containsKey(key)) {
+                return;
+            }
+            insert(key, value);
+            evicted = evictOverflow();
+        }
+        notifyEvicted(evicted);
+    }
+
+    public synchronized V remove(K key) {
+        Weighted<V> entry = map.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        bytes -= entry.weight;
+        return entry.value;
+    }
+
+    /**
+     * Remove the entry only if it still holds the given value
+     */
+    public synchronized boolean remove(K key, V value) {
+        Weighted<V> entry = map.get(key);
+        if (entry == null || entry.value != value) {
+            return false;
+        }
+        map.remove(key);
+        bytes -= entry.weight;
+        return true;
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Copy of the current entries, without touching their recency
+     */
+    public synchronized Map<K, V> snapshot() {
+        Map<K, V> copy = new HashMap<>(map.size() * 2);
+        for (Map.Entry<K, Weighted<V>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().value);
+        }
+        return copy;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, map.size(), bytes);
+    }
+
+    private void insert(K key, V value) {
+        Weighted<V> entry = new Weighted<>(value, weigher.weigh(key, value));
+        Weighted<V> previous = map.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.weight;
+        }
+        bytes += entry.weight;
+    }
+
+    private List<Map.Entry<K, V>> evictOverflow() {
+        List<Map.Entry<K, V>> evicted = null;
+        Iterator<Map.Entry<K, Weighted<V>>> eldest = map.entrySet().iterator();
+        // Always keep the newest entry, even if it alone is over the memory cap
+        while ((map.size() > maxEntries || bytes > maxBytes) && map.size() > 1 && eldest.hasNext()) {
+            Map.Entry<K, Weighted<V>> entry = eldest.next();
+            eldest.remove();
+            bytes -= entry.getValue().weight;
+            evictions++;
+            if (evicted == null) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().value));
+        }
+        return evicted;
+    }
+
+    private void notifyEvicted(List<Map.Entry<K, V>> evicted) {
+        if (evicted == null || listener == null) {
+            return;
+        }
+        for (Map.Entry<K, V> entry : evicted) {
+            listener.evicted(entry.getKey(), entry.getValue());
+        }
+    }
+}
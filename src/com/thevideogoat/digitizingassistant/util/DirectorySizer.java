@@ -0,0 +1,84 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sums the size of a directory tree in parallel. Each subdirectory becomes a fork/join subtask,
+ * so idle workers steal subtrees instead of one thread walking the whole archive, and the
+ * caller gets a future rather than blocking a thread of its own.
+ *
+ * Work runs on the pool of the device holding the tree, see {@link StorageRoots}.
+ */
+public class DirectorySizer {
+
+    /**
+     * Called for every directory just before it is listed, on a pool thread, with the
+     * attributes read when its parent was listed.
+     */
+    public interface Visitor {
+        void visit(File directory, BasicFileAttributes attributes);
+    }
+
+    private DirectorySizer() {
+    }
+
+    public static CompletableFuture<Long> sizeAsync(File root, Visitor visitor) {
+        Path path = root.toPath();
+        return CompletableFuture.supplyAsync(() -> {
+            BasicFileAttributes attributes = FileScanner.readAttributes(path);
+            if (attributes == null || !attributes.isDirectory()) {
+                return 0L;
+            }
+            return new SizeTask(path, attributes, visitor).invoke();
+        }, StorageRoots.getInstance().poolFor(path));
+    }
+
+    private static class SizeTask extends RecursiveTask<Long> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        private final Visitor visitor;
+
+        SizeTask(Path directory, BasicFileAttributes attributes, Visitor visitor) {
+            this.directory = directory;
+            this.attributes = attributes;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected Long compute() {
+            visitor.visit(directory.toFile(), attributes);
+            long[] size = new long[1];
+            List<SizeTask> subdirectories = new ArrayList<>();
+            try {
+                // One listing gives every entry's type and size, no stat per entry
+                FileScanner.list(directory, (entry, entryAttributes) -> {
+                    if (entryAttributes.isRegularFile()) {
+                        size[0] += entryAttributes.size();
+                    } else if (entryAttributes.isDirectory()) {
+                        subdirectories.add(new SizeTask(entry, entryAttributes, visitor));
+                    }
+                });
+            } catch (IOException e) {
+                return 0L;
+            }
+
+            long total = size[0];
+            // Joining here is fine: a worker waiting on a subtask runs other queued tasks meanwhile
+            for (SizeTask task : invokeAll(subdirectories)) {
+                total += task.join();
+            }
+            return total;
+        }
+    }
+}
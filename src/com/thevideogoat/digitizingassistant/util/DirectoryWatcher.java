@@ -0,0 +1,115 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches directories for created, deleted and modified entries on a background thread.
+ *
+ * Registration can fail: the filesystem may not support watching, the directory may be gone,
+ * or the number of watched directories may be at its limit. Callers then fall back to
+ * re-checking the directory themselves.
+ */
+public class DirectoryWatcher {
+
+    // Stay well clear of the per-user watch limit (8192 by default on Linux)
+    private static final int MAX_WATCHED_DIRECTORIES = 4096;
+
+    /**
+     * Receives changes on the watcher thread.
+     */
+    public interface Listener {
+        /** An entry in the directory changed; child is null if the directory's events were lost */
+        void changed(Path directory, Path child);
+    }
+
+    private final WatchService service;
+    private final Listener listener;
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+
+    public DirectoryWatcher(Listener listener) {
+        this.listener = listener;
+        WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Directory watching unavailable: " + e.getMessage());
+            watchService = null;
+        }
+        this.service = watchService;
+        if (service != null) {
+            Thread thread = new Thread(this::run, "directory-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Start watching a directory. Returns whether it is being watched.
+     */
+    public synchronized boolean watch(Path directory) {
+        if (keys.containsKey(directory)) {
+            return true;
+        }
+        if (service == null || keys.size() >= MAX_WATCHED_DIRECTORIES) {
+            return false;
+        }
+        try {
+            WatchKey key = directory.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(directory, key);
+            return true;
+        } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    public boolean isWatched(Path directory) {
+        return keys.containsKey(directory);
+    }
+
+    public synchronized void unwatch(Path directory) {
+        WatchKey key = keys.remove(directory);
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    /**
+     * Stop watching every directory
+     */
+    public synchronized void unwatchAll() {
+        for (WatchKey key : keys.values()) {
+            key.cancel();
+        }
+        keys.clear();
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    listener.changed(directory, null);
+                } else {
+                    listener.changed(directory, (Path) event.context());
+                }
+            }
+            if (!key.reset()) {
+                // The directory was deleted or can no longer be watched
+                keys.remove(directory, key);
+                listener.changed(directory, null);
+            }
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
@@ -43,6 +44,7 @@ public class ExportUtil {
     
     public static void exportDigitizingSheet(Project project, Path outputPath, ExportType exportType, boolean includeCSV, boolean includeJSON, boolean excludeCancelled) {
         try {
+            project.loadAllDetails();
             String baseFileName = project.getName() + "_digitizing_sheet";
             
             // For client version, always generate HTML
@@ -236,6 +238,7 @@ public class ExportUtil {
     
     public static void exportFileMap(Project project, Path outputPath, boolean includeChecksums, int maxDepth, boolean excludeCancelled) {
         try {
+            project.loadAllDetails();
             // Pre-validation: Check for potential issues
             List<String> validationErrors = new ArrayList<>();
             List<String> validationWarnings = new ArrayList<>();
@@ -273,7 +276,8 @@ public class ExportUtil {
                     for (FileReference fileRef : conversion.linkedFiles) {
                         try {
                             java.nio.file.Path path = Paths.get(fileRef.getPath());
-                            if (Files.exists(path) && Files.isDirectory(path)) {
+                            BasicFileAttributes attributes = FileScanner.readAttributes(path);
+                            if (attributes != null && attributes.isDirectory()) {
                                 // Check if directory is accessible
                                 try {
                                     Files.list(path).limit(1).count(); // Test directory access
@@ -418,14 +422,15 @@ public class ExportUtil {
     private static void processFileOrDirectory(FileReference fileRef, Conversion conversion, JsonArray filesArray, boolean includeChecksums, int maxDepth) {
         try {
             java.nio.file.Path path = Paths.get(fileRef.getPath());
+            BasicFileAttributes attributes = FileScanner.readAttributes(path);
             
-            if (Files.exists(path)) {
-                if (Files.isDirectory(path)) {
+            if (attributes != null) {
+                if (attributes.isDirectory()) {
                     // If it's a directory, explore all files within it
                     exploreDirectory(path, conversion, filesArray, includeChecksums, maxDepth);
                 } else {
                     // If it's a file, process it directly
-                    addFileToArray(path, conversion, filesArray, includeChecksums);
+                    addFileToArray(path, attributes, conversion, filesArray, includeChecksums);
                 }
             } else {
                 // File/directory doesn't exist
@@ -452,31 +457,10 @@ public class ExportUtil {
     
     private static void exploreDirectory(java.nio.file.Path dirPath, Conversion conversion, JsonArray filesArray, boolean includeChecksums, int maxDepth) {
         try {
-            // Use a more robust approach with timeout protection
-            List<java.nio.file.Path> files = new ArrayList<>();
-            
-            // Collect files with timeout protection
-            try {
-                Files.walk(dirPath, maxDepth)
-                    .filter(Files::isRegularFile)
-                    .limit(10000) // Limit to prevent infinite loops
-                    .forEach(files::add);
-            } catch (Exception e) {
-                // If Files.walk fails, try a simpler approach
-                try {
-                    Files.list(dirPath)
-                        .filter(Files::isRegularFile)
-                        .limit(1000)
-                        .forEach(files::add);
-                } catch (Exception e2) {
-                    throw new IOException("Could not list directory contents: " + e2.getMessage());
-                }
-            }
-            
-            // Process collected files
-            for (java.nio.file.Path filePath : files) {
-                addFileToArray(filePath, conversion, filesArray, includeChecksums);
-            }
+            // Each file comes with its attributes, so adding it needs no further reads.
+            // Unreadable subdirectories are skipped; the limit guards against huge or looping trees
+            int fileCount = FileScanner.walkFiles(dirPath, maxDepth, 10000, (filePath, attributes) ->
+                addFileToArray(filePath, attributes, conversion, filesArray, includeChecksums));
             
             // Add a summary entry for the directory
             JsonObject dirJson = new JsonObject();
@@ -484,8 +468,8 @@ public class ExportUtil {
             dirJson.addProperty("filePath", dirPath.toString());
             dirJson.addProperty("conversionStatus", conversion.status.toString());
             dirJson.addProperty("type", "directory");
-            dirJson.addProperty("fileCount", files.size());
-            dirJson.addProperty("note", "Directory contains " + files.size() + " files");
+            dirJson.addProperty("fileCount", fileCount);
+            dirJson.addProperty("note", "Directory contains " + fileCount + " files");
             filesArray.add(dirJson);
             
         } catch (Exception e) {
@@ -498,15 +482,15 @@ public class ExportUtil {
         }
     }
     
-    private static void addFileToArray(java.nio.file.Path filePath, Conversion conversion, JsonArray filesArray, boolean includeChecksums) {
+    private static void addFileToArray(java.nio.file.Path filePath, BasicFileAttributes attributes, Conversion conversion, JsonArray filesArray, boolean includeChecksums) {
         try {
             JsonObject fileJson = new JsonObject();
             fileJson.addProperty("tapeName", conversion.name);
             fileJson.addProperty("filePath", filePath.toString());
             fileJson.addProperty("fileName", filePath.getFileName().toString());
             fileJson.addProperty("conversionStatus", conversion.status.toString());
-            fileJson.addProperty("fileSize", Files.size(filePath));
-            fileJson.addProperty("lastModified", Files.getLastModifiedTime(filePath).toString());
+            fileJson.addProperty("fileSize", attributes.size());
+            fileJson.addProperty("lastModified", attributes.lastModifiedTime().toString());
             
             if (includeChecksums) {
                 try {
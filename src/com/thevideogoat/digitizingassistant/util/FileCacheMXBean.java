@@ -0,0 +1,34 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import java.util.Map;
+
+/**
+ * File cache and file probe figures, as seen in jconsole under com.thevideogoat.digitizingassistant.
+ */
+public interface FileCacheMXBean {
+    int getMetadataEntries();
+    long getMetadataEstimatedBytes();
+    long getMetadataHits();
+    long getMetadataMisses();
+    double getMetadataHitRate();
+    long getMetadataEvictions();
+    /** Cached entries read again because they had gone stale in an unwatched directory */
+    long getStaleRereads();
+
+    int getDirectorySizeEntries();
+    long getDirectorySizeHits();
+    long getDirectorySizeMisses();
+    double getDirectorySizeHitRate();
+
+    /** Stat latency per storage root, over its recent stats */
+    Map<String, Double> getProbeLatencyP50Millis();
+    Map<String, Double> getProbeLatencyP99Millis();
+    Map<String, Long> getProbeCounts();
+    /** Reads waiting for a free slot on each device */
+    Map<String, Integer> getQueuedReads();
+    /** Directory listings waiting on each device's scan pool */
+    Map<String, Long> getQueuedScans();
+    String[] getUnreachableRoots();
+
+    void clearCache();
+}
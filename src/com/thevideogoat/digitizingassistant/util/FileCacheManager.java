@@ -1,159 +1,882 @@
 package com.thevideogoat.digitizingassistant.util;
 
+import com.thevideogoat.digitizingassistant.data.DurableFiles;
 import com.thevideogoat.digitizingassistant.data.FileReference;
+import com.thevideogoat.digitizingassistant.ui.DigitizingAssistant;
 
-import javax.swing.*;
-import java.io.File;
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages file operations and caching to improve performance.
  * Handles background file scanning, size calculations, and metadata retrieval.
+ *
+ * Both caches are bounded by entry count and estimated memory, evicting the least recently
+ * used entries. Entries are scoped to the projects that use them: closing a project releases
+ * whatever no other open project shares, and each project's entries are kept in a cache file
+ * in the projects directory so they are available right away the next time it is opened.
+ * Cached entries are only trusted while the directories they came from have the same
+ * modification time as when they were cached.
+ *
+ * Directories holding cached entries are watched, and a change drops exactly the entries it
+ * affects and is passed on to change listeners. Entries from directories that can't be
+ * watched expire after 30 seconds instead.
  */
 public class FileCacheManager {
-    
+
+    public static final String CACHE_FILE_EXTENSION = ".filecache";
+
+    private static final int MAGIC = 0x54564743; // "TVGC"
+    private static final int FORMAT_VERSION = 1;
+    private static final long STALE_MILLIS = 30000;
+    // Wait for a quiet moment before writing cache files
+    private static final long PERSIST_DELAY_SECONDS = 10;
+
+    private static final int MAX_METADATA_ENTRIES = 200_000;
+    private static final long MAX_METADATA_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_DIRECTORY_SIZE_ENTRIES = 20_000;
+    private static final long MAX_DIRECTORY_SIZE_BYTES = 16L * 1024 * 1024;
+    // Map node, cached value and index entry per key; strings are counted at two bytes a char
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
     private static FileCacheManager instance;
-    private final ExecutorService executorService;
-    private final Map<String, FileMetadata> metadataCache;
-    private final Map<String, Long> sizeCache;
-    private final Set<String> scanningDirectories;
+    private final StorageRoots storageRoots;
+    private final BoundedCache<String, FileMetadata> metadataCache;
+    private final BoundedCache<String, DirectorySize> sizeCache;
+    // Modification time of each parent directory of a cached file, and when it was read
+    private final Map<String, DirectoryStamp> directoryStamps;
+    // Reads under way, shared by everyone asking for the same path meanwhile
+    private final Map<String, CompletableFuture<FileMetadata>> metadataInFlight;
+    private final Map<String, CompletableFuture<Long>> sizesInFlight;
     private final AtomicLong totalCachedSize;
-    
+    private final ScheduledExecutorService persistExecutor;
+    private final AtomicBoolean persistScheduled = new AtomicBoolean();
+    private final DirectoryWatcher watcher;
+    // Cached file paths and directory-size keys per watched directory, for invalidation
+    private final Map<String, Set<String>> metadataKeysByDirectory;
+    private final Map<String, Set<String>> sizeKeysByDirectory;
+    private final Object directoryIndexLock = new Object();
+    // Bumped on every change seen in a directory, to catch changes made during a read
+    private final Map<String, Long> directoryVersions;
+    private final List<ChangeListener> changeListeners;
+    private final AtomicLong staleRereads = new AtomicLong();
+    private final Set<CacheScope> openScopes;
+
+    /**
+     * Told about cached files and directories that changed on disk. Called on the watcher thread.
+     */
+    public interface ChangeListener {
+        void filesChanged(Collection<String> paths);
+    }
+
+    /**
+     * The cache entries used by one open project. Close it when the project is closed.
+     */
+    public static class CacheScope implements AutoCloseable {
+        private final FileCacheManager manager;
+        private final File cacheFile;
+        private final Set<String> metadataKeys = ConcurrentHashMap.newKeySet();
+        private final Set<String> sizeKeys = ConcurrentHashMap.newKeySet();
+        private CompletableFuture<Void> loaded;
+        private volatile boolean changed;
+
+        private CacheScope(FileCacheManager manager, File cacheFile) {
+            this.manager = manager;
+            this.cacheFile = cacheFile;
+        }
+
+        @Override
+        public void close() {
+            manager.closeScope(this);
+        }
+    }
+
     private FileCacheManager() {
-        this.executorService = Executors.newFixedThreadPool(2);
-        this.metadataCache = new ConcurrentHashMap<>();
-        this.sizeCache = new ConcurrentHashMap<>();
-        this.scanningDirectories = ConcurrentHashMap.newKeySet();
+        this.storageRoots = StorageRoots.getInstance();
+        this.metadataCache = new BoundedCache<>(MAX_METADATA_ENTRIES, MAX_METADATA_BYTES,
+            (key, value) -> ENTRY_OVERHEAD_BYTES + 2L * key.length(),
+            (key, value) -> metadataDropped(key));
+        this.sizeCache = new BoundedCache<>(MAX_DIRECTORY_SIZE_ENTRIES, MAX_DIRECTORY_SIZE_BYTES,
+            (key, value) -> value.estimateBytes(key),
+            this::sizeDropped);
+        this.directoryStamps = new ConcurrentHashMap<>();
+        this.metadataInFlight = new ConcurrentHashMap<>();
+        this.sizesInFlight = new ConcurrentHashMap<>();
         this.totalCachedSize = new AtomicLong(0);
+        this.metadataKeysByDirectory = new ConcurrentHashMap<>();
+        this.sizeKeysByDirectory = new ConcurrentHashMap<>();
+        this.directoryVersions = new ConcurrentHashMap<>();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+        this.openScopes = new CopyOnWriteArraySet<>();
+        this.watcher = new DirectoryWatcher(this::directoryChanged);
+        FileProbe.getInstance().addListener(this::rootReachabilityChanged);
+        Metrics.register("FileCache", new MetricsView());
+        this.persistExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "file-cache-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveCache, "file-cache-shutdown"));
     }
-    
+
     public static synchronized FileCacheManager getInstance() {
         if (instance == null) {
             instance = new FileCacheManager();
         }
         return instance;
     }
-    
+
+    /**
+     * Open the cache scope for a project, loading its cache file in the background
+     */
+    public CacheScope openScope(String projectName) {
+        CacheScope scope = new CacheScope(this, new File(DigitizingAssistant.PROJECTS_DIRECTORY, projectName + CACHE_FILE_EXTENSION));
+        scope.loaded = CompletableFuture.runAsync(() -> loadCacheFile(scope), storageRoots.ioExecutor());
+        openScopes.add(scope);
+        return scope;
+    }
+
     /**
      * Get file metadata (size, exists, etc.) with caching
      */
     public FileMetadata getFileMetadata(FileReference fileRef) {
+        return getFileMetadata(fileRef, null);
+    }
+
+    /**
+     * Get file metadata with caching, keeping the entry for as long as the scope is open
+     */
+    public FileMetadata getFileMetadata(FileReference fileRef, CacheScope scope) {
+        FileMetadata metadata = cachedMetadata(fileRef, scope);
+        if (metadata != null) {
+            return metadata;
+        }
+        CompletableFuture<FileMetadata> promise = new CompletableFuture<>();
+        CompletableFuture<FileMetadata> running = metadataInFlight.putIfAbsent(fileRef.getPath(), promise);
+        if (running != null) {
+            return running.join();
+        }
+        return readMetadata(fileRef, promise);
+    }
+
+    /**
+     * Get file metadata without blocking: from the cache if it is fresh there, otherwise read on
+     * the I/O executor. Callers asking for a path that is already being read share that read.
+     */
+    public CompletableFuture<FileMetadata> getFileMetadataAsync(FileReference fileRef) {
+        return getFileMetadataAsync(fileRef, null);
+    }
+
+    public CompletableFuture<FileMetadata> getFileMetadataAsync(FileReference fileRef, CacheScope scope) {
+        FileMetadata metadata = cachedMetadata(fileRef, scope);
+        if (metadata != null) {
+            return CompletableFuture.completedFuture(metadata);
+        }
+        // Built before the promise is shared, so a bad path can't leave it behind unfinished
+        Path path = fileRef.getFile().toPath();
+        CompletableFuture<FileMetadata> promise = new CompletableFuture<>();
+        CompletableFuture<FileMetadata> running = metadataInFlight.putIfAbsent(fileRef.getPath(), promise);
+        if (running != null) {
+            return running;
+        }
+        storageRoots.supplyIo(path, () -> readMetadata(fileRef, promise)).whenComplete((read, error) -> {
+            // readMetadata settles the promise itself unless it never got to run
+            if (error != null && metadataInFlight.remove(fileRef.getPath(), promise)) {
+                promise.completeExceptionally(error);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * The cached metadata if it can still be trusted, else null. Never touches the disk.
+     */
+    private FileMetadata cachedMetadata(FileReference fileRef, CacheScope scope) {
         String path = fileRef.getPath();
+        if (scope != null && scope.metadataKeys.add(path)) {
+            scope.changed = true;
+        }
         FileMetadata metadata = metadataCache.get(path);
-        
-        if (metadata == null || metadata.isStale()) {
-            metadata = new FileMetadata(fileRef.getFile());
+        if (metadata == null) {
+            return null;
+        }
+        if (metadata.isStale() && !isWatched(fileRef.getFile().getAbsoluteFile().getParentFile())) {
+            staleRereads.incrementAndGet();
+            return null;
+        }
+        return metadata;
+    }
+
+    /**
+     * Read and cache a file's metadata, then hand it to everyone waiting on the promise
+     */
+    private FileMetadata readMetadata(FileReference fileRef, CompletableFuture<FileMetadata> promise) {
+        String path = fileRef.getPath();
+        File file = fileRef.getFile();
+        File parent = file.getAbsoluteFile().getParentFile();
+        FileMetadata metadata;
+        try {
+            if (!FileProbe.getInstance().isReachable(file.toPath())) {
+                return unreachableMetadata(fileRef, promise);
+            }
+            long version = 0;
+            if (parent != null) {
+                // Watch and stamp the directory first, so the file's details are at least as new
+                watchAndIndex(parent.getPath(), path, metadataKeysByDirectory);
+                version = versionOf(parent.getPath());
+                stampParentDirectory(parent);
+            }
+            metadata = new FileMetadata(file);
+            if (!metadata.exists() && !FileProbe.getInstance().isReachable(file.toPath())) {
+                return unreachableMetadata(fileRef, promise);
+            }
             metadataCache.put(path, metadata);
+            if (parent != null && versionOf(parent.getPath()) != version) {
+                // The directory changed while the file was being read
+                metadataCache.remove(path, metadata);
+            }
+            cacheChanged(path);
+        } catch (RuntimeException e) {
+            metadataInFlight.remove(path, promise);
+            promise.completeExceptionally(e);
+            throw e;
         }
-        
+        // Later callers find the entry in the cache from here on
+        metadataInFlight.remove(path, promise);
+        promise.complete(metadata);
         return metadata;
     }
-    
+
+    /**
+     * What the FileCache MXBean reports
+     */
+    private class MetricsView implements FileCacheMXBean {
+        @Override public int getMetadataEntries() { return metadataCache.stats().entries; }
+        @Override public long getMetadataEstimatedBytes() { return metadataCache.stats().estimatedBytes; }
+        @Override public long getMetadataHits() { return metadataCache.stats().hits; }
+        @Override public long getMetadataMisses() { return metadataCache.stats().misses; }
+        @Override public double getMetadataHitRate() { return metadataCache.stats().hitRate(); }
+        @Override public long getMetadataEvictions() { return metadataCache.stats().evictions; }
+        @Override public long getStaleRereads() { return staleRereads.get(); }
+        @Override public int getDirectorySizeEntries() { return sizeCache.stats().entries; }
+        @Override public long getDirectorySizeHits() { return sizeCache.stats().hits; }
+        @Override public long getDirectorySizeMisses() { return sizeCache.stats().misses; }
+        @Override public double getDirectorySizeHitRate() { return sizeCache.stats().hitRate(); }
+        @Override public Map<String, Double> getProbeLatencyP50Millis() { return Metrics.getInstance().probeLatency(r -> r.percentileMillis(50)); }
+        @Override public Map<String, Double> getProbeLatencyP99Millis() { return Metrics.getInstance().probeLatency(r -> r.percentileMillis(99)); }
+        @Override public Map<String, Long> getProbeCounts() { return Metrics.getInstance().probeCounts(); }
+        @Override public Map<String, Integer> getQueuedReads() { return storageRoots.queuedReads(); }
+        @Override public Map<String, Long> getQueuedScans() { return storageRoots.queuedScans(); }
+        @Override public String[] getUnreachableRoots() { return FileProbe.getInstance().getUnreachableRoots(); }
+        @Override public void clearCache() { FileCacheManager.this.clearCache(); }
+    }
+
+    /**
+     * Answer for a file whose drive or share isn't responding: the last entry read, if any, else
+     * a missing file. Nothing is cached, so the file is read again once the root is back.
+     */
+    private FileMetadata unreachableMetadata(FileReference fileRef, CompletableFuture<FileMetadata> promise) {
+        FileMetadata previous = metadataCache.get(fileRef.getPath());
+        FileMetadata metadata = previous != null ? previous : new FileMetadata((BasicFileAttributes) null);
+        metadataInFlight.remove(fileRef.getPath(), promise);
+        promise.complete(metadata);
+        return metadata;
+    }
+
     /**
      * Calculate total size of files asynchronously
      */
     public CompletableFuture<Long> calculateTotalSizeAsync(List<FileReference> files) {
-        return CompletableFuture.supplyAsync(() -> {
-            long totalSize = 0;
+        return calculateTotalSizeAsync(files, null);
+    }
+
+    /**
+     * Calculate total size of files asynchronously, caching what it reads in the scope
+     */
+    public CompletableFuture<Long> calculateTotalSizeAsync(List<FileReference> files, CacheScope scope) {
+        // Wait for the project's cache file so opening it answers from there instead of the disk
+        return loadedFuture(scope).thenCompose(ignored -> {
+            // Every file is probed at once, limited per device; directories are then summed on
+            // their devices' pools. Nothing here waits on a read.
+            List<CompletableFuture<Long>> sizes = new ArrayList<>(files.size());
             for (FileReference fileRef : files) {
-                FileMetadata metadata = getFileMetadata(fileRef);
-                if (metadata.exists()) {
-                    if (metadata.isDirectory()) {
-                        totalSize += calculateDirectorySizeAsync(fileRef.getFile()).join();
-                    } else {
-                        totalSize += metadata.getSize();
+                sizes.add(getFileMetadataAsync(fileRef, scope).thenCompose(metadata -> {
+                    if (!metadata.exists()) {
+                        return CompletableFuture.completedFuture(0L);
                     }
-                }
+                    return metadata.isDirectory()
+                        ? getDirectorySizeAsync(fileRef.getFile(), scope)
+                        : CompletableFuture.completedFuture(metadata.getSize());
+                }));
             }
-            return totalSize;
-        }, executorService);
+            return CompletableFuture.allOf(sizes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> sizes.stream().mapToLong(CompletableFuture::join).sum());
+        });
     }
-    
+
     /**
      * Calculate directory size recursively asynchronously
      */
     public CompletableFuture<Long> calculateDirectorySizeAsync(File directory) {
-        return CompletableFuture.supplyAsync(() -> {
-            String dirPath = directory.getAbsolutePath();
-            
-            // Check if already scanning this directory
-            if (scanningDirectories.contains(dirPath)) {
-                return 0L; // Return 0 to avoid infinite recursion
-            }
-            
-            scanningDirectories.add(dirPath);
-            try {
-                return calculateDirectorySizeRecursive(directory);
-            } finally {
-                scanningDirectories.remove(dirPath);
-            }
-        }, executorService);
-    }
-    
-    private long calculateDirectorySizeRecursive(File directory) {
-        long size = 0;
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        size += file.length();
-                    } else if (file.isDirectory()) {
-                        size += calculateDirectorySizeRecursive(file);
+        return getDirectorySizeAsync(directory, null);
+    }
+
+    private CompletableFuture<Long> getDirectorySizeAsync(File directory, CacheScope scope) {
+        String dirPath = directory.getAbsolutePath();
+        if (scope != null && scope.sizeKeys.add(dirPath)) {
+            scope.changed = true;
+        }
+        DirectorySize cached = sizeCache.get(dirPath);
+        boolean reachable = FileProbe.getInstance().isReachable(directory.toPath());
+        // An unreachable tree keeps its last known size until its root answers again
+        if (cached != null && (cached.watched || !cached.isStale() || !reachable)) {
+            return CompletableFuture.completedFuture(cached.size);
+        }
+        if (!reachable) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        if (cached != null) {
+            // Checking a stale total stats every directory of its tree, so it never runs on the caller's thread
+            return storageRoots.supplyIo(directory.toPath(), () -> revalidate(dirPath, cached)).thenCompose(valid -> {
+                if (valid) {
+                    return CompletableFuture.completedFuture(cached.size);
+                }
+                staleRereads.incrementAndGet();
+                return scanDirectorySize(directory, dirPath);
+            });
+        }
+        return scanDirectorySize(directory, dirPath);
+    }
+
+    /**
+     * Sum a directory tree and cache the total, sharing a scan of it that is already under way
+     */
+    private CompletableFuture<Long> scanDirectorySize(File directory, String dirPath) {
+        CompletableFuture<Long> promise = new CompletableFuture<>();
+        CompletableFuture<Long> running = sizesInFlight.putIfAbsent(dirPath, promise);
+        if (running != null) {
+            return running;
+        }
+        // Each directory is watched, and its version and time noted, before it is listed,
+        // so the total can be checked later
+        Queue<ScannedDirectory> scanned = new ConcurrentLinkedQueue<>();
+        DirectorySizer.sizeAsync(directory, (dir, attributes) -> {
+            String path = dir.getAbsolutePath();
+            watchAndIndex(path, dirPath, sizeKeysByDirectory);
+            long version = versionOf(path);
+            scanned.add(new ScannedDirectory(path, version, attributes.lastModifiedTime().toMillis()));
+        }).thenApply(size -> {
+            String[] directories = new String[scanned.size()];
+            long[] times = new long[directories.length];
+            int i = 0;
+            for (ScannedDirectory dir : scanned) {
+                directories[i] = dir.path;
+                times[i] = dir.modified;
+                i++;
+            }
+            DirectorySize result = new DirectorySize(size, directories, times, System.currentTimeMillis());
+            result.watched = watchTree(dirPath, result.directories);
+            sizeCache.put(dirPath, result);
+            for (ScannedDirectory dir : scanned) {
+                if (versionOf(dir.path) != dir.version) {
+                    // Part of the tree changed while it was being summed
+                    if (sizeCache.remove(dirPath, result)) {
+                        sizeDropped(dirPath, result);
                     }
+                    break;
                 }
             }
-        }
-        return size;
+            cacheChanged(dirPath);
+            return size;
+        }).whenComplete((size, error) -> {
+            // Removed only once the result is cached, so no second scan starts in between
+            sizesInFlight.remove(dirPath, promise);
+            if (error != null) {
+                promise.completeExceptionally(error);
+            } else {
+                promise.complete(size);
+            }
+        });
+        return promise;
     }
-    
+
     /**
      * Preload metadata for a list of files in the background
      */
     public void preloadMetadataAsync(List<FileReference> files) {
-        CompletableFuture.runAsync(() -> {
+        preloadMetadataAsync(files, null);
+    }
+
+    public void preloadMetadataAsync(List<FileReference> files, CacheScope scope) {
+        loadedFuture(scope).thenRun(() -> {
             for (FileReference fileRef : files) {
-                getFileMetadata(fileRef);
+                getFileMetadataAsync(fileRef, scope);
             }
-        }, executorService);
+        });
+    }
+
+
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Hit, miss and eviction counts for file metadata
+     */
+    public BoundedCache.Stats getMetadataStats() {
+        return metadataCache.stats();
+    }
+
+    /**
+     * Hit, miss and eviction counts for directory sizes
+     */
+    public BoundedCache.Stats getDirectorySizeStats() {
+        return sizeCache.stats();
     }
-    
+
     /**
      * Clear cache to free memory
      */
     public void clearCache() {
-        metadataCache.clear();
-        sizeCache.clear();
+        synchronized (directoryIndexLock) {
+            watcher.unwatchAll();
+            metadataCache.clear();
+            sizeCache.clear();
+            directoryStamps.clear();
+            metadataKeysByDirectory.clear();
+            sizeKeysByDirectory.clear();
+        }
         totalCachedSize.set(0);
+        for (CacheScope scope : openScopes) {
+            scope.changed = true;
+        }
+        schedulePersist();
     }
-    
+
     /**
      * Invalidate cache for specific files
      */
     public void invalidateCache(List<FileReference> files) {
         for (FileReference fileRef : files) {
-            metadataCache.remove(fileRef.getPath());
-            sizeCache.remove(fileRef.getPath());
+            if (metadataCache.remove(fileRef.getPath()) != null) {
+                metadataDropped(fileRef.getPath());
+            }
+            String dirPath = fileRef.getFile().getAbsolutePath();
+            DirectorySize size = sizeCache.remove(dirPath);
+            if (size != null) {
+                sizeDropped(dirPath, size);
+            }
+            cacheChanged(fileRef.getPath());
+            cacheChanged(dirPath);
         }
     }
-    
+
+    /**
+     * Write the cache file of every open project that changed since it was last written
+     */
+    public void saveCache() {
+        for (CacheScope scope : openScopes) {
+            saveScope(scope);
+        }
+    }
+
     /**
-     * Shutdown the executor service
+     * Save the cache and stop the background writer
      */
     public void shutdown() {
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
+        saveCache();
+        persistExecutor.shutdown();
+    }
+
+    private CompletableFuture<Void> loadedFuture(CacheScope scope) {
+        return scope != null ? scope.loaded : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Save a closed scope's entries, then drop those no other open project uses
+     */
+    private void closeScope(CacheScope scope) {
+        if (!openScopes.remove(scope)) {
+            return;
+        }
+        persistExecutor.execute(() -> {
+            scope.loaded.join();
+            saveScope(scope);
+            for (String key : scope.metadataKeys) {
+                if (!usedByOpenScope(key, false) && metadataCache.remove(key) != null) {
+                    metadataDropped(key);
+                }
+            }
+            for (String key : scope.sizeKeys) {
+                if (!usedByOpenScope(key, true)) {
+                    DirectorySize size = sizeCache.remove(key);
+                    if (size != null) {
+                        sizeDropped(key, size);
+                    }
+                }
+            }
+        });
+    }
+
+    private boolean usedByOpenScope(String key, boolean directorySize) {
+        for (CacheScope scope : openScopes) {
+            if ((directorySize ? scope.sizeKeys : scope.metadataKeys).contains(key)) {
+                return true;
             }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
         }
+        return false;
+    }
+
+    private boolean isWatched(File directory) {
+        return directory != null && watcher.isWatched(directory.toPath());
+    }
+
+    private long versionOf(String directory) {
+        return directoryVersions.getOrDefault(directory, 0L);
     }
-    
+
+    /**
+     * Watch a directory and note that a cache key depends on it. Returns whether it is watched.
+     */
+    private boolean watchAndIndex(String directory, String key, Map<String, Set<String>> index) {
+        synchronized (directoryIndexLock) {
+            boolean watched = watcher.watch(new File(directory).toPath());
+            index.computeIfAbsent(directory, k -> ConcurrentHashMap.newKeySet()).add(key);
+            return watched;
+        }
+    }
+
+    /**
+     * Watch every directory of a summed tree and note which sizes depend on each.
+     * Returns whether the whole tree is watched.
+     */
+    private boolean watchTree(String sizeKey, String[] directories) {
+        boolean all = true;
+        for (String directory : directories) {
+            all &= watchAndIndex(directory, sizeKey, sizeKeysByDirectory);
+        }
+        return all;
+    }
+
+    /**
+     * Clean up after a metadata entry left the cache
+     */
+    private void metadataDropped(String key) {
+        File parent = new File(key).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            unindex(parent.getPath(), key, metadataKeysByDirectory);
+        }
+    }
+
+    /**
+     * Clean up after a directory size left the cache
+     */
+    private void sizeDropped(String key, DirectorySize size) {
+        for (String directory : size.directories) {
+            unindex(directory, key, sizeKeysByDirectory);
+        }
+    }
+
+    /**
+     * Forget that a key depends on a directory, and stop watching it once nothing does
+     */
+    private void unindex(String directory, String key, Map<String, Set<String>> index) {
+        synchronized (directoryIndexLock) {
+            Set<String> keys = index.get(directory);
+            if (keys != null && key != null) {
+                keys.remove(key);
+            }
+            Set<String> files = metadataKeysByDirectory.get(directory);
+            Set<String> sizes = sizeKeysByDirectory.get(directory);
+            if ((files == null || files.isEmpty()) && (sizes == null || sizes.isEmpty())) {
+                metadataKeysByDirectory.remove(directory);
+                sizeKeysByDirectory.remove(directory);
+                directoryStamps.remove(directory);
+                watcher.unwatch(new File(directory).toPath());
+            }
+        }
+    }
+
+    /**
+     * Check a directory size against the current directory times, which only reads directory
+     * times. The tree is watched first so nothing changes unnoticed in between.
+     */
+    private boolean revalidate(String sizeKey, DirectorySize size) {
+        boolean watched = watchTree(sizeKey, size.directories);
+        for (int i = 0; i < size.directories.length; i++) {
+            BasicFileAttributes attributes = FileScanner.readAttributes(Path.of(size.directories[i]));
+            if (attributes == null || attributes.lastModifiedTime().toMillis() != size.modified[i]) {
+                return false;
+            }
+        }
+        size.watched = watched;
+        size.checkedTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Drop the cached entries a change in a directory affects and tell the listeners
+     */
+    private void directoryChanged(Path directory, Path child) {
+        String dirPath = directory.toString();
+        directoryVersions.merge(dirPath, 1L, Long::sum);
+        if (child == null) {
+            directoryStamps.remove(dirPath);
+        } else if (directoryStamps.containsKey(dirPath)) {
+            // Only the changed entry is dropped below; the rest still match the directory as it is
+            // now. The time is read through FileProbe so a stalled share can't hold up the watcher;
+            // if it can't be read, the stamp goes and the next read stamps the directory again.
+            BasicFileAttributes attributes = FileScanner.readAttributes(directory);
+            if (attributes != null) {
+                long modified = attributes.lastModifiedTime().toMillis();
+                directoryStamps.computeIfPresent(dirPath, (k, stamp) -> new DirectoryStamp(modified, stamp.readTime));
+            } else {
+                directoryStamps.remove(dirPath);
+            }
+        }
+
+        Set<String> changedPaths = new LinkedHashSet<>();
+        Set<String> keys = metadataKeysByDirectory.get(dirPath);
+        if (keys != null) {
+            String childName = child != null ? child.getFileName().toString() : null;
+            for (String key : new ArrayList<>(keys)) {
+                if (childName == null || new File(key).getName().equals(childName)) {
+                    // The directory stays watched; the file will likely be read again soon
+                    keys.remove(key);
+                    metadataCache.remove(key);
+                    changedPaths.add(key);
+                }
+            }
+        }
+        Set<String> sizeKeys = sizeKeysByDirectory.get(dirPath);
+        if (sizeKeys != null) {
+            for (String sizeKey : new ArrayList<>(sizeKeys)) {
+                DirectorySize size = sizeCache.remove(sizeKey);
+                if (size != null) {
+                    sizeDropped(sizeKey, size);
+                    changedPaths.add(sizeKey);
+                }
+            }
+        }
+
+        if (!changedPaths.isEmpty()) {
+            for (String path : changedPaths) {
+                cacheChanged(path);
+            }
+            for (ChangeListener listener : changeListeners) {
+                listener.filesChanged(changedPaths);
+            }
+        }
+    }
+
+    /**
+     * A storage root came back: anything cached under it may have changed while it was away
+     */
+    private void rootReachabilityChanged(Path root, boolean reachable) {
+        if (!reachable) {
+            return;
+        }
+        Set<String> directories = new HashSet<>(metadataKeysByDirectory.keySet());
+        directories.addAll(sizeKeysByDirectory.keySet());
+        for (String directory : directories) {
+            Path path = Path.of(directory);
+            if (path.startsWith(root)) {
+                directoryChanged(path, null);
+            }
+        }
+    }
+
+    private void stampParentDirectory(File parent) {
+        String parentPath = parent.getPath();
+        DirectoryStamp stamp = directoryStamps.get(parentPath);
+        if (stamp == null || System.currentTimeMillis() - stamp.readTime > STALE_MILLIS) {
+            long readTime = System.currentTimeMillis();
+            BasicFileAttributes attributes = FileScanner.readAttributes(parent.toPath());
+            if (attributes != null) {
+                directoryStamps.put(parentPath, new DirectoryStamp(attributes.lastModifiedTime().toMillis(), readTime));
+            }
+        }
+    }
+
+    /**
+     * Note that a cached path changed, so the cache files of projects using it get rewritten
+     */
+    private void cacheChanged(String key) {
+        boolean any = false;
+        for (CacheScope scope : openScopes) {
+            if (scope.metadataKeys.contains(key) || scope.sizeKeys.contains(key)) {
+                scope.changed = true;
+                any = true;
+            }
+        }
+        if (any) {
+            schedulePersist();
+        }
+    }
+
+    private void schedulePersist() {
+        if (persistScheduled.compareAndSet(false, true)) {
+            persistExecutor.schedule(() -> {
+                persistScheduled.set(false);
+                saveCache();
+            }, PERSIST_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void saveScope(CacheScope scope) {
+        synchronized (scope) {
+            if (!scope.changed) {
+                return;
+            }
+            scope.changed = false;
+            File temp = new File(scope.cacheFile.getParentFile(), scope.cacheFile.getName() + ".tmp");
+            try {
+                writeCacheFile(temp, scope);
+                DurableFiles.move(temp.toPath(), scope.cacheFile.toPath());
+            } catch (IOException e) {
+                System.err.println("Could not save file metadata cache: " + e.getMessage());
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Read a project's cache file, keeping only entries whose directories haven't changed since.
+     * Each directory is checked once, however many files in it are cached.
+     */
+    private void loadCacheFile(CacheScope scope) {
+        File cacheFile = scope.cacheFile;
+        if (!cacheFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+
+            int directoryCount = in.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                String directory = in.readUTF();
+                long modified = in.readLong();
+                int fileCount = in.readInt();
+                String[] paths = new String[fileCount];
+                FileMetadata[] entries = new FileMetadata[fileCount];
+                for (int j = 0; j < fileCount; j++) {
+                    paths[j] = in.readUTF();
+                    byte flags = in.readByte();
+                    entries[j] = new FileMetadata((flags & 1) != 0, (flags & 2) != 0, in.readLong(), in.readLong(), now);
+                }
+
+                // Watch before comparing times so a change in between isn't missed. Both happen
+                // outside the index lock and the time is read through FileProbe, so a share that
+                // doesn't answer only costs its own entries.
+                Path path = new File(directory).toPath();
+                boolean watched = false;
+                boolean unchanged = false;
+                if (FileProbe.getInstance().isReachable(path)) {
+                    watched = watcher.watch(path);
+                    BasicFileAttributes attributes = FileScanner.readAttributes(path);
+                    unchanged = attributes != null && attributes.lastModifiedTime().toMillis() == modified;
+                }
+                synchronized (directoryIndexLock) {
+                    // Dropped by someone else in between, so a change may have gone unseen
+                    if (watched && !watcher.isWatched(path)) {
+                        unchanged = false;
+                    }
+                    if (unchanged) {
+                        directoryStamps.putIfAbsent(directory, new DirectoryStamp(modified, now));
+                        for (int j = 0; j < fileCount; j++) {
+                            watchAndIndex(directory, paths[j], metadataKeysByDirectory);
+                            scope.metadataKeys.add(paths[j]);
+                            metadataCache.putIfAbsent(paths[j], entries[j]);
+                        }
+                    } else {
+                        // Stop watching again unless another entry needs it
+                        unindex(directory, null, metadataKeysByDirectory);
+                    }
+                }
+            }
+
+            int sizeCount = in.readInt();
+            for (int i = 0; i < sizeCount; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                int count = in.readInt();
+                String[] directories = new String[count];
+                long[] modified = new long[count];
+                for (int j = 0; j < count; j++) {
+                    directories[j] = in.readUTF();
+                    modified[j] = in.readLong();
+                }
+                // Checked on first use, which may well be off the startup path
+                scope.sizeKeys.add(path);
+                sizeCache.putIfAbsent(path, new DirectorySize(size, directories, modified, 0));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read file metadata cache: " + e.getMessage());
+        }
+    }
+
+    private void writeCacheFile(File file, CacheScope scope) throws IOException {
+        // Group files by directory; a file is only kept if it was read after its directory's
+        // time, otherwise the directory could have changed in between unnoticed
+        Map<String, FileMetadata> metadataEntries = metadataCache.snapshot();
+        Map<String, List<String>> byDirectory = new HashMap<>();
+        Map<String, DirectoryStamp> stamps = new HashMap<>();
+        for (String key : scope.metadataKeys) {
+            FileMetadata metadata = metadataEntries.get(key);
+            File parent = new File(key).getAbsoluteFile().getParentFile();
+            if (metadata == null || parent == null) continue;
+            DirectoryStamp stamp = stamps.computeIfAbsent(parent.getPath(), directoryStamps::get);
+            if (stamp != null && metadata.cacheTime >= stamp.readTime) {
+                byDirectory.computeIfAbsent(parent.getPath(), k -> new ArrayList<>()).add(key);
+            }
+        }
+        Map<String, DirectorySize> sizeEntries = sizeCache.snapshot();
+        sizeEntries.keySet().retainAll(scope.sizeKeys);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            out.writeInt(byDirectory.size());
+            for (Map.Entry<String, List<String>> group : byDirectory.entrySet()) {
+                out.writeUTF(group.getKey());
+                out.writeLong(stamps.get(group.getKey()).modified);
+                out.writeInt(group.getValue().size());
+                for (String key : group.getValue()) {
+                    FileMetadata metadata = metadataEntries.get(key);
+                    out.writeUTF(key);
+                    out.writeByte((metadata.exists ? 1 : 0) | (metadata.isDirectory ? 2 : 0));
+                    out.writeLong(metadata.size);
+                    out.writeLong(metadata.lastModified);
+                }
+            }
+
+            out.writeInt(sizeEntries.size());
+            for (Map.Entry<String, DirectorySize> entry : sizeEntries.entrySet()) {
+                DirectorySize size = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(size.size);
+                out.writeInt(size.directories.length);
+                for (int i = 0; i < size.directories.length; i++) {
+                    out.writeUTF(size.directories[i]);
+                    out.writeLong(size.modified[i]);
+                }
+            }
+        }
+    }
+
     /**
      * File metadata holder with caching
      */
@@ -163,25 +886,92 @@ public class FileCacheManager {
         private final boolean isDirectory;
         private final long lastModified;
         private final long cacheTime;
-        
+
         public FileMetadata(File file) {
-            this.exists = file.exists();
-            this.isDirectory = exists && file.isDirectory();
-            this.size = exists ? file.length() : 0;
-            this.lastModified = exists ? file.lastModified() : 0;
+            this(FileScanner.readAttributes(file.toPath()));
+        }
+
+        public FileMetadata(BasicFileAttributes attributes) {
             this.cacheTime = System.currentTimeMillis();
+            this.exists = attributes != null;
+            this.isDirectory = exists && attributes.isDirectory();
+            this.size = exists ? attributes.size() : 0;
+            this.lastModified = exists ? attributes.lastModifiedTime().toMillis() : 0;
+        }
+
+        private FileMetadata(boolean exists, boolean isDirectory, long size, long lastModified, long cacheTime) {
+            this.exists = exists;
+            this.isDirectory = isDirectory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.cacheTime = cacheTime;
         }
-        
+
         public long getSize() { return size; }
         public boolean exists() { return exists; }
         public boolean isDirectory() { return isDirectory; }
         public long getLastModified() { return lastModified; }
-        
+
         /**
-         * Check if cached data is stale (older than 30 seconds)
+         * Check if cached data is stale (older than 30 seconds). Only applies to files in
+         * directories that can't be watched.
          */
         public boolean isStale() {
-            return System.currentTimeMillis() - cacheTime > 30000;
+            return System.currentTimeMillis() - cacheTime > STALE_MILLIS;
+        }
+    }
+
+    /**
+     * Total size of a directory tree, with the modification time of every directory in it
+     * at the time it was summed.
+     */
+    private static class DirectorySize {
+        final long size;
+        final String[] directories;
+        final long[] modified;
+        volatile long checkedTime;
+        // Every directory in the tree is watched, so the size stays valid until told otherwise
+        volatile boolean watched;
+
+        DirectorySize(long size, String[] directories, long[] modified, long checkedTime) {
+            this.size = size;
+            this.directories = directories;
+            this.modified = modified;
+            this.checkedTime = checkedTime;
+        }
+
+        boolean isStale() {
+            return System.currentTimeMillis() - checkedTime > STALE_MILLIS;
+        }
+
+        long estimateBytes(String key) {
+            long bytes = ENTRY_OVERHEAD_BYTES + 2L * key.length();
+            for (String directory : directories) {
+                bytes += 56 + 2L * directory.length();
+            }
+            return bytes;
+        }
+    }
+
+    private static class ScannedDirectory {
+        final String path;
+        final long version;
+        final long modified;
+
+        ScannedDirectory(String path, long version, long modified) {
+            this.path = path;
+            this.version = version;
+            this.modified = modified;
+        }
+    }
+
+    private static class DirectoryStamp {
+        final long modified;
+        final long readTime;
+
+        DirectoryStamp(long modified, long readTime) {
+            this.modified = modified;
+            this.readTime = readTime;
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import com.thevideogoat.digitizingassistant.data.Preferences;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs filesystem stats with a deadline. A share that has dropped off the network, or a drive
+ * that was unplugged, can hold a stat for tens of seconds; the first stat on a storage root to
+ * miss its deadline marks the whole root unreachable. From then on stats under it answer at once
+ * with the caller's fallback, until a background check finds the root responding again.
+ *
+ * Roots are worked out without touching the path (see {@link StorageRoots#rootOf(Path)}), since
+ * asking the filesystem would block just the same. The Unix filesystem root is never marked: a
+ * path keyed there is on the system disk rather than a mount of its own, and a slow stat on it is
+ * load, not a lost device.
+ */
+public class FileProbe {
+
+    private static final long HEALTH_CHECK_SECONDS = 5;
+
+    /**
+     * Told when a storage root stops or starts responding. Called on a background thread.
+     */
+    public interface Listener {
+        void reachabilityChanged(Path root, boolean reachable);
+    }
+
+    private static FileProbe instance;
+
+    // Unreachable roots, and the pending check that will bring each back
+    private final Map<Path, ScheduledFuture<?>> unreachableRoots = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService healthCheck;
+
+    private FileProbe() {
+        this.healthCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "storage-health-check");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static synchronized FileProbe getInstance() {
+        if (instance == null) {
+            instance = new FileProbe();
+        }
+        return instance;
+    }
+
+    /**
+     * Run a stat of the given path. Returns whenUnreachable if its root is known to be
+     * unreachable, or if the stat doesn't finish within the deadline.
+     */
+    public <T> T call(Path path, Callable<T> stat, T whenUnreachable) {
+        Path root = StorageRoots.rootOf(path);
+        if (unreachableRoots.containsKey(root)) {
+            return whenUnreachable;
+        }
+        long start = System.nanoTime();
+        Future<T> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return stat.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, StorageRoots.getInstance().ioExecutor());
+        } catch (RejectedExecutionException e) {
+            return whenUnreachable;
+        }
+        try {
+            T value = result.get(Preferences.getInstance().getStatTimeoutMillis(), TimeUnit.MILLISECONDS);
+            Metrics.getInstance().recordProbe(root, System.nanoTime() - start);
+            return value;
+        } catch (TimeoutException e) {
+            Metrics.getInstance().recordProbe(root, System.nanoTime() - start);
+            // The stat is left to finish or hang on its own thread
+            timedOut(path);
+            return whenUnreachable;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Stat of " + path + " failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return whenUnreachable;
+        }
+    }
+
+    /**
+     * Whether stats under the path's root are currently expected to answer
+     */
+    public boolean isReachable(Path path) {
+        return !unreachableRoots.containsKey(StorageRoots.rootOf(path));
+    }
+
+    public String[] getUnreachableRoots() {
+        return unreachableRoots.keySet().stream().map(Path::toString).sorted().toArray(String[]::new);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Note that work on the path missed its deadline, marking its root unreachable
+     */
+    void timedOut(Path path) {
+        Path root = StorageRoots.rootOf(path);
+        if (root.toString().equals("/")) {
+            return;
+        }
+        markUnreachable(root);
+    }
+
+    private void markUnreachable(Path root) {
+        synchronized (unreachableRoots) {
+            if (unreachableRoots.containsKey(root)) {
+                return;
+            }
+            System.err.println("Storage root not responding, treating as unreachable: " + root);
+            unreachableRoots.put(root, healthCheck.scheduleWithFixedDelay(() -> checkRoot(root),
+                HEALTH_CHECK_SECONDS, HEALTH_CHECK_SECONDS, TimeUnit.SECONDS));
+        }
+        notifyListeners(root, false);
+    }
+
+    private void checkRoot(Path root) {
+        CompletableFuture<Boolean> check = CompletableFuture.supplyAsync(() -> Files.exists(root),
+            StorageRoots.getInstance().ioExecutor());
+        boolean responding;
+        try {
+            responding = check.get(Preferences.getInstance().getStatTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            responding = false;
+        } catch (InterruptedException e) {
+            return;
+        }
+        if (!responding) {
+            return;
+        }
+        ScheduledFuture<?> pending = unreachableRoots.remove(root);
+        if (pending != null) {
+            pending.cancel(false);
+            System.err.println("Storage root responding again: " + root);
+            notifyListeners(root, true);
+        }
+    }
+
+    private void notifyListeners(Path root, boolean reachable) {
+        for (Listener listener : listeners) {
+            listener.reachabilityChanged(root, reachable);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import com.thevideogoat.digitizingassistant.data.Preferences;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * File scans that get every attribute of an entry in one filesystem call. Asking a File for
+ * exists(), isDirectory(), length() and lastModified() is four separate stats, which is slow
+ * on network shares. Walks go through Files.walkFileTree, which hands each entry's attributes
+ * to the visitor (straight from the directory listing on Windows).
+ *
+ * Symbolic links are followed, like File does. Entries that can't be read are skipped.
+ *
+ * Listings and walks have a deadline like stats do (see {@link FileProbe}), but on progress
+ * rather than on the whole: the listing runs on the I/O executor and fails if it goes a stat
+ * timeout without reaching another entry, so a huge directory on a slow share still lists while
+ * a share that has dropped away marks its root unreachable. Visitors are called on the caller's
+ * thread.
+ */
+public class FileScanner {
+
+    /**
+     * Receives an entry together with its attributes.
+     */
+    public interface Visitor {
+        void visit(Path path, BasicFileAttributes attributes);
+    }
+
+    private static final Set<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+    // Sent for directories entered and entries skipped, which count as progress without being visited
+    private static final Object PROGRESS = new Object();
+
+    /**
+     * An entry found by the walk on the I/O executor
+     */
+    private static class Found {
+        final Path path;
+        final BasicFileAttributes attributes;
+
+        Found(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * The end of the walk, with its failure if it failed
+     */
+    private static class Finished {
+        final Throwable error;
+
+        Finished(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    private FileScanner() {
+    }
+
+    /**
+     * Attributes of a path, or null if it doesn't exist or can't be read. Also null if its storage
+     * root isn't responding; {@link FileProbe#isReachable(Path)} tells the two apart.
+     */
+    public static BasicFileAttributes readAttributes(Path path) {
+        return FileProbe.getInstance().call(path, () -> {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException | SecurityException e) {
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Visit every entry directly inside a directory, subdirectories included.
+     */
+    public static void list(Path directory, Visitor visitor) throws IOException {
+        walk(directory, 1, Integer.MAX_VALUE, visitor, false);
+    }
+
+    /**
+     * Visit every regular file under root, at most maxDepth levels down. If root is a file
+     * it is visited itself.
+     */
+    public static void walkFiles(Path root, int maxDepth, Visitor visitor) throws IOException {
+        walk(root, maxDepth, Integer.MAX_VALUE, visitor, true);
+    }
+
+    /**
+     * Like {@link #walkFiles(Path, int, Visitor)}, but stops after limit files. Returns how many
+     * files were visited.
+     */
+    public static int walkFiles(Path root, int maxDepth, int limit, Visitor visitor) throws IOException {
+        return walk(root, maxDepth, limit, visitor, true);
+    }
+
+    /**
+     * Total size of a file, or of every file under a directory. 0 if root can't be read.
+     */
+    public static long totalSize(Path root) {
+        long[] size = new long[1];
+        try {
+            walkFiles(root, Integer.MAX_VALUE, (path, attributes) -> size[0] += attributes.size());
+        } catch (IOException e) {
+            return 0;
+        }
+        return size[0];
+    }
+
+    private static int walk(Path root, int maxDepth, int limit, Visitor visitor, boolean filesOnly) throws IOException {
+        FileProbe probe = FileProbe.getInstance();
+        if (!probe.isReachable(root)) {
+            throw new IOException("Storage root not responding: " + StorageRoots.rootOf(root));
+        }
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        StorageRoots.getInstance().ioExecutor().execute(() -> {
+            Throwable error = null;
+            try {
+                walkNow(root, maxDepth, limit, filesOnly, abandoned, events);
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+            events.add(new Finished(error));
+        });
+
+        long timeout = Preferences.getInstance().getStatTimeoutMillis();
+        int visited = 0;
+        try {
+            while (true) {
+                Object event = events.poll(timeout, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    // The walk is left to finish or hang on its own thread
+                    probe.timedOut(root);
+                    throw new IOException("Listing of " + root + " stopped responding");
+                }
+                if (event instanceof Found) {
+                    Found found = (Found) event;
+                    visitor.visit(found.path, found.attributes);
+                    visited++;
+                } else if (event instanceof Finished) {
+                    Throwable error = ((Finished) event).error;
+                    if (error instanceof IOException) {
+                        throw (IOException) error;
+                    }
+                    if (error != null) {
+                        throw (RuntimeException) error;
+                    }
+                    return visited;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while listing " + root);
+        } finally {
+            abandoned.set(true);
+        }
+    }
+
+    /**
+     * The walk itself, handing entries over through events until it is done or abandoned
+     */
+    private static void walkNow(Path root, int maxDepth, int limit, boolean filesOnly,
+                                AtomicBoolean abandoned, BlockingQueue<Object> events) throws IOException {
+        int[] visited = new int[1];
+        Files.walkFileTree(root, FOLLOW_LINKS, maxDepth, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (abandoned.get()) {
+                    throw new CancellationException();
+                }
+                events.add(PROGRESS);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // Directories at maxDepth arrive here too, without being opened; that is how
+                // list() sees subdirectories
+                if (abandoned.get()) {
+                    throw new CancellationException();
+                }
+                if (filesOnly && !attrs.isRegularFile()) {
+                    events.add(PROGRESS);
+                    return FileVisitResult.CONTINUE;
+                }
+                events.add(new Found(file, attrs));
+                return ++visited[0] >= limit ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (file.equals(root)) {
+                    throw exc;
+                }
+                events.add(PROGRESS);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                // A directory that failed part way through still counts with what was read
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
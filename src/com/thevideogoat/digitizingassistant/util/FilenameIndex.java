@@ -0,0 +1,327 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import com.thevideogoat.digitizingassistant.data.DurableFiles;
+import com.thevideogoat.digitizingassistant.ui.DigitizingAssistant;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The names of every file under a search root, indexed so relinking can look files up instead
+ * of walking the tree once per conversion.
+ *
+ * The index remembers what each directory held and the directory's modification time, and is
+ * saved to disk per root. Asking for a root again, in this session or a later one, updates the
+ * index: every directory is stat'ed, but only those whose time changed are listed again, so an
+ * unchanged archive costs one stat per directory rather than a full walk.
+ *
+ * Building walks the tree in parallel (see {@link ParallelWalker}). Listeners see each file as it
+ * is added, so callers can show early matches while the rest of the tree is still being read;
+ * lookups only cover the whole tree once the build has completed.
+ *
+ * Names are matched lower-cased. The base name is the name without its extension; a leading
+ * dot doesn't start an extension.
+ */
+public class FilenameIndex {
+
+    public static final String INDEX_FILE_EXTENSION = ".relinkindex";
+    private static final int MAGIC = 0x5456474E; // "TVGN"
+    private static final int FORMAT_VERSION = 1;
+    // Coarsest directory time resolution around (FAT); a directory changed this recently could
+    // change again without its time moving, so its listing isn't trusted next time
+    private static final long TIME_RESOLUTION_MILLIS = 2000;
+
+    /**
+     * What a directory held when it was last listed
+     */
+    private static class Directory {
+        final long modified;
+        final List<String> files = new ArrayList<>();
+        final List<String> subdirectories = new ArrayList<>();
+
+        Directory(long modified) {
+            this.modified = modified;
+        }
+    }
+
+    private static final Map<String, FilenameIndex> indexes = new HashMap<>();
+
+    private final File root;
+    private final CompletableFuture<FilenameIndex> completion = new CompletableFuture<>();
+    private final List<Consumer<File>> listeners = new ArrayList<>();
+    private boolean built;
+    private final List<File> files = new ArrayList<>();
+    private final Map<String, List<File>> byBaseName = new HashMap<>();
+    private final Map<String, List<File>> byExtension = new HashMap<>();
+    // Files with "trimmed" in the name, under every prefix of the name that ends before an underscore
+    private final Map<String, List<File>> trimmedByPrefix = new HashMap<>();
+    // Every directory's entries by path, for the next update to reuse where nothing changed
+    private final Map<String, Directory> directories = new HashMap<>();
+    // Whether this build differs from the directories it started from, and so needs saving
+    private boolean changed;
+    // Built on first fuzzy lookup, since most relinks never need one
+    private FuzzyNameIndex fuzzy;
+
+    private FilenameIndex(File root) {
+        this.root = root;
+    }
+
+    /**
+     * The up to date index for a search root. Blocks until it is built.
+     */
+    public static FilenameIndex forRoot(File root) {
+        return forRootAsync(root, null).join();
+    }
+
+    /**
+     * The index for a search root, brought up to date in the background from the last one,
+     * or from the saved one at the start of a session. A build already running is shared.
+     * The listener, if given, is called with every file already in the index and then with
+     * each file as it is added, on the building threads.
+     */
+    public static CompletableFuture<FilenameIndex> forRootAsync(File root, Consumer<File> listener) {
+        String key = root.getAbsolutePath();
+        FilenameIndex index;
+        synchronized (indexes) {
+            index = indexes.get(key);
+            if (index == null || index.completion.isDone()) {
+                FilenameIndex previous = index;
+                index = new FilenameIndex(root);
+                indexes.put(key, index);
+                index.build(previous);
+            }
+        }
+        if (listener != null) {
+            index.addListener(listener);
+        }
+        return index.completion;
+    }
+
+    public static String baseName(String lowerName) {
+        int dot = lowerName.lastIndexOf('.');
+        return dot > 0 ? lowerName.substring(0, dot) : lowerName;
+    }
+
+    public static String extension(String lowerName) {
+        int dot = lowerName.lastIndexOf('.');
+        return dot > 0 ? lowerName.substring(dot) : "";
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public synchronized List<File> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    public synchronized int size() {
+        return files.size();
+    }
+
+    /**
+     * Files whose lower-cased base name is exactly the given one
+     */
+    public synchronized List<File> withBaseName(String lowerBaseName) {
+        return byBaseName.getOrDefault(lowerBaseName, Collections.emptyList());
+    }
+
+    /**
+     * Files with the given lower-cased extension, dot included
+     */
+    public synchronized List<File> withExtension(String lowerExtension) {
+        return byExtension.getOrDefault(lowerExtension, Collections.emptyList());
+    }
+
+    /**
+     * Files whose lower-cased name starts with prefix + "_" and contains "trimmed"
+     */
+    public synchronized List<File> trimmedWithPrefix(String lowerPrefix) {
+        return trimmedByPrefix.getOrDefault(lowerPrefix, Collections.emptyList());
+    }
+
+    /**
+     * Files whose names are close to the given name, most similar first. Only once the index
+     * is complete.
+     */
+    public synchronized List<File> similarTo(String name) {
+        if (fuzzy == null) {
+            fuzzy = new FuzzyNameIndex(files);
+        }
+        return fuzzy.search(name);
+    }
+
+    private void build(FilenameIndex previous) {
+        StorageRoots storageRoots = StorageRoots.getInstance();
+        CompletableFuture.supplyAsync(() -> previous != null ? previous.directories : load(), storageRoots.ioExecutor())
+            .thenCompose(known -> ParallelWalker.walkAsync(root.toPath(),
+                (dir, attributes, files, subdirectories) -> list(known, dir, attributes, files, subdirectories),
+                (file, attributes) -> add(file.toFile()))
+                .thenRun(() -> {
+                    synchronized (this) {
+                        changed |= directories.size() != known.size();
+                    }
+                }))
+            .whenComplete((done, error) -> {
+                if (error != null) {
+                    System.err.println("Could not index " + root + ": " + error.getMessage());
+                }
+                boolean save;
+                synchronized (this) {
+                    built = true;
+                    listeners.clear();
+                    save = error == null && changed;
+                }
+                if (save) {
+                    storageRoots.ioExecutor().execute(this::save);
+                }
+                completion.complete(this);
+            });
+    }
+
+    /**
+     * Hand over a directory's entries, from the last listing if the directory hasn't changed
+     * since. Subdirectories are stat'ed either way, since a change inside one doesn't show in
+     * its parent's time.
+     */
+    private void list(Map<String, Directory> known, Path dir, BasicFileAttributes attributes,
+                      FileScanner.Visitor files, FileScanner.Visitor subdirectories) throws IOException {
+        String path = dir.toString();
+        long modified = attributes.lastModifiedTime().toMillis();
+        Directory before = known.get(path);
+        if (before != null && before.modified == modified) {
+            addDirectory(path, before, false);
+            for (String name : before.files) {
+                files.visit(dir.resolve(name), null);
+            }
+            for (String name : before.subdirectories) {
+                Path subdirectory = dir.resolve(name);
+                BasicFileAttributes subdirectoryAttributes = FileScanner.readAttributes(subdirectory);
+                if (subdirectoryAttributes != null && subdirectoryAttributes.isDirectory()) {
+                    subdirectories.visit(subdirectory, subdirectoryAttributes);
+                }
+            }
+            return;
+        }
+
+        boolean settled = System.currentTimeMillis() - modified > TIME_RESOLUTION_MILLIS;
+        Directory listed = new Directory(settled ? modified : Long.MIN_VALUE);
+        ParallelWalker.LIST_DIRECTORY.list(dir, attributes, (file, fileAttributes) -> {
+            listed.files.add(file.getFileName().toString());
+            files.visit(file, fileAttributes);
+        }, (subdirectory, subdirectoryAttributes) -> {
+            listed.subdirectories.add(subdirectory.getFileName().toString());
+            subdirectories.visit(subdirectory, subdirectoryAttributes);
+        });
+        addDirectory(path, listed, true);
+    }
+
+    private synchronized void addListener(Consumer<File> listener) {
+        files.forEach(listener);
+        if (!built) {
+            listeners.add(listener);
+        }
+    }
+
+    private synchronized void addDirectory(String path, Directory directory, boolean listed) {
+        directories.put(path, directory);
+        changed |= listed;
+    }
+
+    private synchronized void add(File file) {
+        files.add(file);
+        String lowerName = file.getName().toLowerCase();
+        byBaseName.computeIfAbsent(baseName(lowerName), k -> new ArrayList<>(1)).add(file);
+        byExtension.computeIfAbsent(extension(lowerName), k -> new ArrayList<>()).add(file);
+        if (lowerName.contains("trimmed")) {
+            for (int i = lowerName.indexOf('_'); i >= 0; i = lowerName.indexOf('_', i + 1)) {
+                trimmedByPrefix.computeIfAbsent(lowerName.substring(0, i), k -> new ArrayList<>(1)).add(file);
+            }
+        }
+        for (Consumer<File> listener : listeners) {
+            listener.accept(file);
+        }
+    }
+
+    private File indexFile() {
+        String name = UUID.nameUUIDFromBytes(root.getAbsolutePath().getBytes(StandardCharsets.UTF_8)) + INDEX_FILE_EXTENSION;
+        return new File(new File(DigitizingAssistant.PROJECTS_DIRECTORY, "relink-index"), name);
+    }
+
+    /**
+     * The directories saved for this root, or none if there is no readable index file
+     */
+    private Map<String, Directory> load() {
+        File file = indexFile();
+        Map<String, Directory> loaded = new HashMap<>();
+        if (!file.exists()) {
+            return loaded;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(root.getAbsolutePath())) {
+                return loaded;
+            }
+            int directoryCount = in.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                String path = in.readUTF();
+                Directory directory = new Directory(in.readLong());
+                int fileCount = in.readInt();
+                for (int j = 0; j < fileCount; j++) {
+                    directory.files.add(in.readUTF());
+                }
+                int subdirectoryCount = in.readInt();
+                for (int j = 0; j < subdirectoryCount; j++) {
+                    directory.subdirectories.add(in.readUTF());
+                }
+                loaded.put(path, directory);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read relink index for " + root + ": " + e.getMessage());
+            loaded.clear();
+        }
+        return loaded;
+    }
+
+    private void save() {
+        // One save per root file at a time; a newer build may finish while an older one saves
+        synchronized (FilenameIndex.class) {
+            writeIndexFile();
+        }
+    }
+
+    private void writeIndexFile() {
+        File file = indexFile();
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(root.getAbsolutePath());
+                out.writeInt(directories.size());
+                for (Map.Entry<String, Directory> entry : directories.entrySet()) {
+                    Directory directory = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(directory.modified);
+                    out.writeInt(directory.files.size());
+                    for (String name : directory.files) {
+                        out.writeUTF(name);
+                    }
+                    out.writeInt(directory.subdirectories.size());
+                    for (String name : directory.subdirectories) {
+                        out.writeUTF(name);
+                    }
+                }
+            }
+            DurableFiles.move(temp.toPath(), file.toPath());
+        } catch (IOException e) {
+            System.err.println("Could not save relink index for " + root + ": " + e.getMessage());
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Finds files whose names are close to a given name, for captures saved with a typo or an
+ * extra suffix like "Smith Wedding (1)". Names are compared by their trigrams: the base name is
+ * lower-cased, stripped to letters and digits, and every run of three characters (counting the
+ * start and end) is one trigram. Similarity is the Dice coefficient of two names' trigram sets.
+ *
+ * An inverted index from trigram to files keeps a search cheap on large roots. A match needs a
+ * minimum number of shared trigrams, so only the rarest of the query's trigrams have to be
+ * looked up to find every candidate, and each candidate is then scored exactly.
+ *
+ * Numbers aren't fuzzy: "Tape 12" must not match "Tape 13" or "Tape 1". A file only matches if
+ * the numbers in the query start its own numbers. Files are also indexed by their first number,
+ * so a query with a number only has to look at files that share it when they are fewer.
+ */
+public class FuzzyNameIndex {
+
+    public static final double MIN_SIMILARITY = 0.7;
+    // Trigram characters: the start/end marker, digits and letters
+    private static final int ALPHABET = 37;
+
+    private final List<File> files;
+    // Every file's key as trigram symbols, one after another; file id's key starts at offsets[id]
+    private final byte[] symbols;
+    private final int[] offsets;
+    // Distinct trigrams in each file's key, for the length filter and the score
+    private final int[] sizes;
+    // Ids of the files holding each trigram, ascending, by trigram code
+    private final int[][] postings = new int[ALPHABET * ALPHABET * ALPHABET][];
+    // Ids of the files by the first number in their name
+    private final Map<Integer, int[]> byFirstNumber = new HashMap<>();
+
+    public FuzzyNameIndex(List<File> files) {
+        this.files = new ArrayList<>(files);
+        String[] keys = new String[this.files.size()];
+        this.sizes = new int[keys.length];
+        this.offsets = new int[keys.length + 1];
+        int[] counts = new int[postings.length];
+        for (int id = 0; id < keys.length; id++) {
+            keys[id] = normalize(FilenameIndex.baseName(this.files.get(id).getName().toLowerCase()));
+            offsets[id + 1] = offsets[id] + keys[id].length();
+            int[] codes = trigrams(keys[id]);
+            sizes[id] = codes.length;
+            for (int code : codes) {
+                counts[code]++;
+            }
+        }
+        for (int code = 0; code < postings.length; code++) {
+            if (counts[code] > 0) {
+                postings[code] = new int[counts[code]];
+                counts[code] = 0;
+            }
+        }
+        this.symbols = new byte[offsets[keys.length]];
+        for (int id = 0; id < keys.length; id++) {
+            for (int code : trigrams(keys[id])) {
+                postings[code][counts[code]++] = id;
+            }
+            for (int i = 0; i < keys[id].length(); i++) {
+                symbols[offsets[id] + i] = (byte) symbol(keys[id].charAt(i));
+            }
+        }
+
+        Map<Integer, Integer> numberCounts = new HashMap<>();
+        int[] firstNumbers = new int[keys.length];
+        for (int id = 0; id < keys.length; id++) {
+            List<Integer> runs = digitRuns(FilenameIndex.baseName(this.files.get(id).getName()));
+            firstNumbers[id] = runs.isEmpty() ? -1 : runs.get(0);
+            if (firstNumbers[id] >= 0) {
+                numberCounts.merge(firstNumbers[id], 1, Integer::sum);
+            }
+        }
+        numberCounts.forEach((number, count) -> byFirstNumber.put(number, new int[count]));
+        numberCounts.replaceAll((number, count) -> 0);
+        for (int id = 0; id < keys.length; id++) {
+            if (firstNumbers[id] >= 0) {
+                byFirstNumber.get(firstNumbers[id])[numberCounts.merge(firstNumbers[id], 1, Integer::sum) - 1] = id;
+            }
+        }
+    }
+
+    /**
+     * Files similar to the given name, most similar first
+     */
+    public List<File> search(String name) {
+        int[] query = trigrams(normalize(name));
+        if (query.length == 0) {
+            return Collections.emptyList();
+        }
+        // Dice >= s with c shared trigrams needs c >= s * t / (2 - s), t being the query's count;
+        // a file sharing that many must hold one of the t - c + 1 rarest
+        int needed = Math.max(1, (int) Math.ceil(MIN_SIMILARITY * query.length / (2 - MIN_SIMILARITY)));
+        Integer[] byRarity = new Integer[query.length];
+        for (int i = 0; i < query.length; i++) {
+            byRarity[i] = query[i];
+        }
+        Arrays.sort(byRarity, Comparator.comparingInt(code -> postings[code] != null ? postings[code].length : 0));
+
+        // Ids from the rarest lists, sorted so each candidate is scored once
+        int total = 0;
+        for (int i = 0; i <= query.length - needed; i++) {
+            total += postings[byRarity[i]] != null ? postings[byRarity[i]].length : 0;
+        }
+        List<Integer> digits = digitRuns(name);
+        int[] sameNumber = digits.isEmpty() ? null : byFirstNumber.getOrDefault(digits.get(0), new int[0]);
+        int[] candidates;
+        if (sameNumber != null && sameNumber.length <= total) {
+            candidates = sameNumber;
+        } else {
+            candidates = new int[total];
+            int filled = 0;
+            for (int i = 0; i <= query.length - needed; i++) {
+                int[] ids = postings[byRarity[i]];
+                if (ids != null) {
+                    System.arraycopy(ids, 0, candidates, filled, ids.length);
+                    filled += ids.length;
+                }
+            }
+            Arrays.sort(candidates);
+        }
+
+        // A file with f trigrams can't reach the threshold unless s * t / (2 - s) <= f <= t * (2 - s) / s
+        double minSize = MIN_SIMILARITY * query.length / (2 - MIN_SIMILARITY);
+        double maxSize = query.length * (2 - MIN_SIMILARITY) / MIN_SIMILARITY;
+        boolean[] inQuery = new boolean[postings.length];
+        for (int code : query) {
+            inQuery[code] = true;
+        }
+        Map<File, Double> scores = new HashMap<>();
+        for (int i = 0; i < candidates.length; i++) {
+            int id = candidates[i];
+            if (i > 0 && id == candidates[i - 1] || sizes[id] < minSize || sizes[id] > maxSize) {
+                continue;
+            }
+            double score = 2.0 * shared(id, inQuery) / (query.length + sizes[id]);
+            if (score < MIN_SIMILARITY) {
+                continue;
+            }
+            File file = files.get(id);
+            if (digitsMatch(digits, digitRuns(FilenameIndex.baseName(file.getName())))) {
+                scores.put(file, score);
+            }
+        }
+        List<File> result = new ArrayList<>(scores.keySet());
+        result.sort(Comparator.comparingDouble((File f) -> -scores.get(f)).thenComparing(File::getName));
+        return result;
+    }
+
+    /**
+     * How close a file name is to the given name, from 0 to 1; 0 if their numbers differ
+     */
+    public static double similarity(String name, String fileName) {
+        String base = FilenameIndex.baseName(fileName.toLowerCase());
+        if (!digitsMatch(digitRuns(name), digitRuns(base))) {
+            return 0;
+        }
+        return dice(trigrams(normalize(name)), trigrams(normalize(base)));
+    }
+
+    private static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = Character.toLowerCase(name.charAt(i));
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Distinct trigram codes of a normalized name, ascending
+     */
+    private static int[] trigrams(String key) {
+        if (key.isEmpty()) {
+            return new int[0];
+        }
+        int[] codes = new int[key.length()];
+        for (int i = 0; i < key.length(); i++) {
+            codes[i] = trigram(key, i);
+        }
+        Arrays.sort(codes);
+        int distinct = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (i == 0 || codes[i] != codes[i - 1]) {
+                codes[distinct++] = codes[i];
+            }
+        }
+        return Arrays.copyOf(codes, distinct);
+    }
+
+    /**
+     * How many of the query's trigrams a file's key holds, each counted once
+     */
+    private int shared(int id, boolean[] query) {
+        int start = offsets[id];
+        int length = offsets[id + 1] - start;
+        // Keys are short, so a linear check for repeats beats any set
+        int[] counted = new int[length];
+        int shared = 0;
+        outer:
+        for (int i = 0; i < length; i++) {
+            int a = i == 0 ? 0 : symbols[start + i - 1];
+            int c = i == length - 1 ? 0 : symbols[start + i + 1];
+            int code = (a * ALPHABET + symbols[start + i]) * ALPHABET + c;
+            if (query[code]) {
+                for (int j = 0; j < shared; j++) {
+                    if (counted[j] == code) {
+                        continue outer;
+                    }
+                }
+                counted[shared++] = code;
+            }
+        }
+        return shared;
+    }
+
+    private static int trigram(String key, int i) {
+        int a = i == 0 ? 0 : symbol(key.charAt(i - 1));
+        int b = symbol(key.charAt(i));
+        int c = i == key.length() - 1 ? 0 : symbol(key.charAt(i + 1));
+        return (a * ALPHABET + b) * ALPHABET + c;
+    }
+
+    private static int symbol(char c) {
+        return c <= '9' ? 1 + (c - '0') : 11 + (c - 'a');
+    }
+
+    private static double dice(int[] a, int[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return 2.0 * shared / (a.length + b.length);
+    }
+
+    private static List<Integer> digitRuns(String name) {
+        List<Integer> runs = new ArrayList<>();
+        long value = -1;
+        for (int i = 0; i <= name.length(); i++) {
+            char c = i < name.length() ? name.charAt(i) : ' ';
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    value = Integer.MAX_VALUE;
+                }
+            } else if (value >= 0) {
+                runs.add((int) value);
+                value = -1;
+            }
+        }
+        return runs;
+    }
+
+    private static boolean digitsMatch(List<Integer> query, List<Integer> candidate) {
+        return candidate.size() >= query.size() && candidate.subList(0, query.size()).equals(query);
+    }
+}
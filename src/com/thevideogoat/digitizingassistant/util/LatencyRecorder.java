@@ -0,0 +1,43 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent durations of some operation for percentiles, plus a running count.
+ */
+public class LatencyRecorder {
+
+    private static final int WINDOW = 1024;
+
+    private final long[] samples = new long[WINDOW];
+    private int next;
+    private int filled;
+    private long count;
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW;
+        filled = Math.min(filled + 1, WINDOW);
+        count++;
+    }
+
+    /**
+     * The given percentile (0-100) of the recent durations, in milliseconds; 0 if none recorded
+     */
+    public double percentileMillis(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (filled == 0) {
+                return 0;
+            }
+            sorted = Arrays.copyOf(samples, filled);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+}
@@ -0,0 +1,90 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import com.thevideogoat.digitizingassistant.data.Conversion;
+import com.thevideogoat.digitizingassistant.data.FileReference;
+import com.thevideogoat.digitizingassistant.data.Project;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks a project's linked files in the background once it is open.
+ * Files are probed on a small bounded pool, so slow network shares and USB drives are checked
+ * in parallel without being flooded, and each missing file is reported as soon as it is found.
+ * Missing files stay linked so they can be relinked or removed later. Files on a drive or share
+ * that isn't responding can't be told apart from missing ones, so they are reported separately
+ * as unavailable and never as missing.
+ *
+ * A check is a single stat per file and never reads file contents; fingerprints are recorded
+ * only when asked for, see {@link com.thevideogoat.digitizingassistant.data.RelinkService#recordFingerprints}.
+ */
+public class LinkValidator {
+
+    private static final int MAX_CONCURRENT_CHECKS = 8;
+
+    private static final ExecutorService checkPool = Executors.newFixedThreadPool(MAX_CONCURRENT_CHECKS, r -> {
+        Thread t = new Thread(r, "link-validator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Receives results on the validation threads; UI code should hop to the EDT itself.
+     */
+    public interface Listener {
+        void missing(Conversion conversion, FileReference file);
+
+        void unavailable(Conversion conversion, FileReference file);
+
+        void finished(int checked, int missing);
+    }
+
+    private LinkValidator() {
+    }
+
+    /**
+     * Check every linked file in the project, reporting missing ones to the listener as they are
+     * found. Call it on the EDT: the lists of links are copied there, and only the copies are
+     * read on the validation threads.
+     */
+    public static CompletableFuture<Void> validateAsync(Project project, Listener listener) {
+        // Conversions opened from the project index are checked from its list of links
+        Map<Conversion, List<FileReference>> linked = new LinkedHashMap<>();
+        for (Conversion conversion : project.getConversions()) {
+            linked.put(conversion, conversion.copyLinkedFiles());
+        }
+        AtomicInteger checked = new AtomicInteger();
+        AtomicInteger missing = new AtomicInteger();
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<Conversion, List<FileReference>> entry : linked.entrySet()) {
+            Conversion conversion = entry.getKey();
+            for (FileReference file : entry.getValue()) {
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    file.invalidateCache();
+                    FileReference.Presence presence = file.presence();
+                    if (presence == FileReference.Presence.MISSING) {
+                        missing.incrementAndGet();
+                        listener.missing(conversion, file);
+                    } else if (presence == FileReference.Presence.UNKNOWN) {
+                        listener.unavailable(conversion, file);
+                    }
+                    checked.incrementAndGet();
+                }, checkPool));
+            }
+        }
+
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((v, e) -> {
+            if (e != null) {
+                System.err.println("Could not check all linked files: " + e.getMessage());
+            }
+            listener.finished(checked.get(), missing.get());
+        });
+    }
+}
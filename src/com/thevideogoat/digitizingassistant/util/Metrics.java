@@ -0,0 +1,85 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Timings gathered while the app runs, published over JMX so jconsole (or anything reading the
+ * platform MBean server) can show where time goes. The file cache registers its own figures
+ * through {@link #register(String, Object)}.
+ */
+public class Metrics {
+
+    private static final String DOMAIN = "com.thevideogoat.digitizingassistant";
+
+    private static Metrics instance;
+
+    private final Map<Path, LatencyRecorder> probeLatency = new ConcurrentHashMap<>();
+    private final LatencyRecorder projectLoads = new LatencyRecorder();
+    private final LatencyRecorder projectSaves = new LatencyRecorder();
+
+    private Metrics() {
+        register("ProjectIO", new ProjectIoMXBean() {
+            @Override public long getLoadCount() { return projectLoads.count(); }
+            @Override public double getLoadP50Millis() { return projectLoads.percentileMillis(50); }
+            @Override public double getLoadP99Millis() { return projectLoads.percentileMillis(99); }
+            @Override public long getSaveCount() { return projectSaves.count(); }
+            @Override public double getSaveP50Millis() { return projectSaves.percentileMillis(50); }
+            @Override public double getSaveP99Millis() { return projectSaves.percentileMillis(99); }
+        });
+    }
+
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Publish an MXBean under the app's domain with the given type. Failing to is only logged.
+     */
+    public static void register(String type, Object mxBean) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=" + type);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(mxBean, name);
+            }
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not publish " + type + " metrics: " + e.getMessage());
+        }
+    }
+
+    public void recordProbe(Path root, long nanos) {
+        probeLatency.computeIfAbsent(root, k -> new LatencyRecorder()).record(nanos);
+    }
+
+    public void recordProjectLoad(long nanos) {
+        projectLoads.record(nanos);
+    }
+
+    public void recordProjectSave(long nanos) {
+        projectSaves.record(nanos);
+    }
+
+    /**
+     * A figure per storage root, sorted by root
+     */
+    Map<String, Double> probeLatency(ToDoubleFunction<LatencyRecorder> figure) {
+        Map<String, Double> result = new TreeMap<>();
+        probeLatency.forEach((root, recorder) -> result.put(root.toString(), figure.applyAsDouble(recorder)));
+        return result;
+    }
+
+    Map<String, Long> probeCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        probeLatency.forEach((root, recorder) -> result.put(root.toString(), recorder.count()));
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks a directory tree in parallel, the way {@link DirectorySizer} sums one: each subdirectory
+ * is a fork/join subtask, so idle workers steal subtrees while others are still waiting on a
+ * listing. Visitors are called concurrently from the pool threads as entries are found.
+ *
+ * Work runs on the pool of the device holding the tree, see {@link StorageRoots}.
+ */
+public class ParallelWalker {
+
+    /**
+     * Hands over the entries of one directory: regular files to files, subdirectories to
+     * directories. An incremental walk can pass on entries it remembers instead of listing
+     * the directory; files passed that way may come without attributes (null).
+     */
+    public interface Lister {
+        void list(Path directory, BasicFileAttributes attributes, FileScanner.Visitor files,
+                  FileScanner.Visitor directories) throws IOException;
+    }
+
+    /**
+     * Lists the directory, one filesystem listing with every entry's attributes
+     */
+    public static final Lister LIST_DIRECTORY = (directory, attributes, files, directories) ->
+        FileScanner.list(directory, (entry, entryAttributes) -> {
+            if (entryAttributes.isRegularFile()) {
+                files.visit(entry, entryAttributes);
+            } else if (entryAttributes.isDirectory()) {
+                directories.visit(entry, entryAttributes);
+            }
+        });
+
+    private ParallelWalker() {
+    }
+
+    /**
+     * Visit every regular file under root. Completes once the whole tree has been visited;
+     * cancelling the future stops the walk after the listings in progress.
+     */
+    public static CompletableFuture<Void> walkAsync(Path root, FileScanner.Visitor files) {
+        return walkAsync(root, LIST_DIRECTORY, files);
+    }
+
+    /**
+     * Like {@link #walkAsync(Path, FileScanner.Visitor)}, getting every directory's entries,
+     * root's included, from the lister.
+     */
+    public static CompletableFuture<Void> walkAsync(Path root, Lister lister, FileScanner.Visitor files) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            BasicFileAttributes attributes = FileScanner.readAttributes(root);
+            if (attributes == null || !attributes.isDirectory()) {
+                throw new IllegalArgumentException("Not a readable directory: " + root);
+            }
+            new WalkTask(root, attributes, lister, files, result).invoke();
+        }, StorageRoots.getInstance().poolFor(root)).whenComplete((done, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error.getCause() != null ? error.getCause() : error);
+            } else {
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    private static class WalkTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        private final Lister lister;
+        private final FileScanner.Visitor files;
+        private final CompletableFuture<Void> result;
+
+        WalkTask(Path directory, BasicFileAttributes attributes, Lister lister,
+                 FileScanner.Visitor files, CompletableFuture<Void> result) {
+            this.directory = directory;
+            this.attributes = attributes;
+            this.lister = lister;
+            this.files = files;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (result.isDone()) {
+                return;
+            }
+            List<WalkTask> subdirectories = new ArrayList<>();
+            try {
+                lister.list(directory, attributes, files, (entry, entryAttributes) ->
+                    subdirectories.add(new WalkTask(entry, entryAttributes, lister, files, result)));
+            } catch (IOException e) {
+                // Unreadable directories are skipped, like in FileScanner's walks
+                return;
+            }
+            invokeAll(subdirectories);
+        }
+    }
+}
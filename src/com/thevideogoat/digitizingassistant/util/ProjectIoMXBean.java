@@ -0,0 +1,13 @@
+package com.thevideogoat.digitizingassistant.util;
+
+/**
+ * How long opening and saving projects takes, over the recent loads and saves.
+ */
+public interface ProjectIoMXBean {
+    long getLoadCount();
+    double getLoadP50Millis();
+    double getLoadP99Millis();
+    long getSaveCount();
+    double getSaveP50Millis();
+    double getSaveP99Millis();
+}
@@ -0,0 +1,356 @@
+package com.thevideogoat.digitizingassistant.util;
+
+import com.thevideogoat.digitizingassistant.data.Preferences;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Groups paths by the storage device (file store) they live on, so file scans can be limited
+ * per device. Every device gets its own fork/join pool whose parallelism is that device's cap,
+ * which keeps a slow network share from tying up threads that a local drive could use.
+ *
+ * Single reads such as metadata probes go through one I/O executor instead, on virtual threads
+ * where the JDK has them, with a limit on how many may be in flight per device.
+ */
+public class StorageRoots {
+
+    private static final Set<String> NETWORK_TYPES = Set.of(
+        "nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "afpfs", "webdav", "fuse.sshfs");
+    // Network shares slow down rather than speed up with many parallel directory listings
+    private static final int NETWORK_CONCURRENCY = 4;
+    // Metadata reads in flight per device: enough to keep a disk's queue full without thrashing it
+    private static final int LOCAL_IO_PERMITS = 64;
+    private static final int NETWORK_IO_PERMITS = 16;
+    // Directories whose file store is remembered; probes look up the store of each file's directory
+    private static final int MAX_CACHED_STORES = 10_000;
+    // Where removable drives and network shares usually get mounted on macOS and Linux
+    private static final List<String> MOUNT_PARENTS = List.of("/Volumes", "/mnt", "/media", "/run/media", "/net");
+    // How long the mount table is trusted, so drives mounted while the app runs get their own root
+    private static final long MOUNT_TABLE_MILLIS = 5000;
+    private static final Path MOUNT_TABLE = Paths.get("/proc/self/mounts");
+
+    // Mount points, deepest first
+    private static volatile List<Path> mountPoints = List.of();
+    private static volatile long mountPointsRead;
+
+    private static StorageRoots instance;
+
+    private final Map<Object, ForkJoinPool> pools = new ConcurrentHashMap<>();
+    private final Map<Object, IoGate> gates = new ConcurrentHashMap<>();
+    // File store of each path asked about
+    private final BoundedCache<Path, FileStore> stores = new BoundedCache<>(MAX_CACHED_STORES, Long.MAX_VALUE,
+        (path, store) -> 0, null);
+    private final ExecutorService ioExecutor = newIoExecutor();
+
+    private StorageRoots() {
+    }
+
+    public static synchronized StorageRoots getInstance() {
+        if (instance == null) {
+            instance = new StorageRoots();
+        }
+        return instance;
+    }
+
+    /**
+     * The pool that scans the device holding the given path
+     */
+    public ForkJoinPool poolFor(Path path) {
+        FileStore store = storeOf(path);
+        Object key = store != null ? store : "unknown";
+        return pools.computeIfAbsent(key, k -> {
+            int parallelism = concurrencyFor(store);
+            String name = store != null ? store.name() : "unknown";
+            return new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("storage-scan-" + name + "-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        });
+    }
+
+    /**
+     * How many threads may scan a device at once
+     */
+    public int concurrencyFor(FileStore store) {
+        int configured = Preferences.getInstance().getMaxConcurrentScansPerDevice();
+        if (configured > 0) {
+            return configured;
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (store != null && isNetworkStore(store)) {
+            return Math.min(processors, NETWORK_CONCURRENCY);
+        }
+        return processors;
+    }
+
+    /**
+     * Run a blocking read of the given path on the I/O executor. At most a fixed number of reads
+     * per device run at once; the rest wait in line without holding a thread.
+     */
+    public <T> CompletableFuture<T> supplyIo(Path path, Supplier<T> read) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Finding the device can itself block on a stalled share, so it happens on the executor too.
+        // Whatever fails, the future completes, since callers may be waiting on it.
+        ioExecutor.execute(() -> {
+            try {
+                gateFor(path).run(() -> {
+                    try {
+                        result.complete(read.get());
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Executor for blocking file work that isn't tied to one device
+     */
+    public Executor ioExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * How many reads may be in flight on a device at once
+     */
+    public int ioPermitsFor(FileStore store) {
+        return store != null && isNetworkStore(store) ? NETWORK_IO_PERMITS : LOCAL_IO_PERMITS;
+    }
+
+    /**
+     * The storage root a path lives under, worked out without touching the path so it never
+     * blocks: the drive or network share on Windows, and elsewhere the deepest mount point
+     * holding it. A path under a usual mount location that the mount table doesn't list (yet)
+     * gets the first directory there, and only a path on the system disk gets the filesystem root.
+     */
+    public static Path rootOf(Path path) {
+        Path absolute = path.toAbsolutePath();
+        Path root = absolute.getRoot();
+        if (root == null) {
+            return absolute;
+        }
+        if (!root.toString().equals("/")) {
+            // Windows drive letter, or \\server\share\ for a network path
+            return root;
+        }
+        Path normalized = absolute.normalize();
+        for (Path mountPoint : mountPoints()) {
+            if (normalized.startsWith(mountPoint)) {
+                if (mountPoint.getNameCount() > 0) {
+                    return mountPoint;
+                }
+                break;
+            }
+        }
+        for (String parent : MOUNT_PARENTS) {
+            Path mountParent = Paths.get(parent);
+            if (absolute.startsWith(mountParent) && absolute.getNameCount() > mountParent.getNameCount()) {
+                return mountParent.resolve(absolute.getName(mountParent.getNameCount()));
+            }
+        }
+        return root;
+    }
+
+    private static List<Path> mountPoints() {
+        long now = System.currentTimeMillis();
+        if (now - mountPointsRead > MOUNT_TABLE_MILLIS) {
+            mountPointsRead = now;
+            mountPoints = readMountPoints();
+        }
+        return mountPoints;
+    }
+
+    /**
+     * Mount points from the kernel's mount table, which is in memory and answers even while a
+     * mounted share doesn't. Without /proc (macOS), from the file stores, which list the mount
+     * table the same way.
+     */
+    private static List<Path> readMountPoints() {
+        List<Path> points = new ArrayList<>();
+        try {
+            if (Files.isReadable(MOUNT_TABLE)) {
+                for (String line : Files.readAllLines(MOUNT_TABLE)) {
+                    String[] fields = line.split(" ");
+                    if (fields.length > 1) {
+                        points.add(Paths.get(unescapeMountPoint(fields[1])));
+                    }
+                }
+            } else {
+                for (FileStore store : FileSystems.getDefault().getFileStores()) {
+                    // A Unix file store prints as "<mount point> (<device>)"; the mount point isn't exposed otherwise
+                    String text = store.toString();
+                    int device = text.lastIndexOf(" (");
+                    if (device > 0 && text.startsWith("/")) {
+                        points.add(Paths.get(text.substring(0, device)));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read the mount table: " + e.getMessage());
+        }
+        points.sort(Comparator.comparingInt(Path::getNameCount).reversed());
+        return points;
+    }
+
+    /**
+     * The mount table writes spaces, tabs, newlines and backslashes in paths as octal escapes
+     */
+    private static String unescapeMountPoint(String field) {
+        StringBuilder path = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && isOctal(field, i + 1)) {
+                path.append((char) Integer.parseInt(field.substring(i + 1, i + 4), 8));
+                i += 3;
+            } else {
+                path.append(c);
+            }
+        }
+        return path.toString();
+    }
+
+    private static boolean isOctal(String s, int start) {
+        for (int i = start; i < start + 3; i++) {
+            if (i >= s.length() || s.charAt(i) < '0' || s.charAt(i) > '7') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads waiting for a free slot, per device
+     */
+    public Map<String, Integer> queuedReads() {
+        Map<String, Integer> result = new TreeMap<>();
+        gates.forEach((key, gate) -> result.put(key.toString(), gate.queued()));
+        return result;
+    }
+
+    /**
+     * Directory listings waiting on each device's scan pool
+     */
+    public Map<String, Long> queuedScans() {
+        Map<String, Long> result = new TreeMap<>();
+        pools.forEach((key, pool) -> result.put(key.toString(), pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount()));
+        return result;
+    }
+
+    public static boolean isNetworkStore(FileStore store) {
+        return NETWORK_TYPES.contains(store.type().toLowerCase(Locale.ROOT));
+    }
+
+    private IoGate gateFor(Path path) {
+        // A file lives on the same device as its directory, and directories are far fewer
+        Path parent = path.toAbsolutePath().getParent();
+        FileStore store = storeOf(parent != null ? parent : path);
+        Object key = store != null ? store : "unknown";
+        return gates.computeIfAbsent(key, k -> new IoGate(ioPermitsFor(store)));
+    }
+
+    private static ExecutorService newIoExecutor() {
+        try {
+            // Java 21+: a thread per read, and a read blocked on the disk holds no platform thread
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Older JDKs: threads are bounded by the per-device permits, since waiting reads don't hold one
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "file-io-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Counting semaphore for one device. Reads over the limit are queued rather than blocking a
+     * thread, and each finished read hands its permit to the next in line.
+     */
+    private class IoGate {
+        private final Deque<Runnable> waiting = new ArrayDeque<>();
+        private int available;
+
+        IoGate(int permits) {
+            this.available = permits;
+        }
+
+        synchronized int queued() {
+            return waiting.size();
+        }
+
+        void run(Runnable read) {
+            synchronized (this) {
+                if (available == 0) {
+                    waiting.add(read);
+                    return;
+                }
+                available--;
+            }
+            runHoldingPermit(read);
+        }
+
+        private void runHoldingPermit(Runnable read) {
+            try {
+                read.run();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            ioExecutor.execute(() -> runHoldingPermit(next));
+        }
+    }
+
+    private FileStore storeOf(Path path) {
+        Path absolute = path.toAbsolutePath();
+        FileStore store = stores.get(absolute);
+        if (store == null) {
+            try {
+                store = Files.getFileStore(absolute);
+                stores.put(absolute, store);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return store;
+    }
+}